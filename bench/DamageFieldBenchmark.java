@@ -0,0 +1,68 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares one turn of enemy damage lookups done the old way, asking whether
+ * every enemy can shoot each tile we look at as maximumPotentialDamageTaken
+ * did, with building a DamageField and reading the same tiles from it. The
+ * visibility masks are built in setup, since a game asks the World for each
+ * one once and caches it. Run it with scripts/run-jmh.sh.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DamageFieldBenchmark {
+
+	@Param({ "32", "128", "256" })
+	public int side;
+
+	@Param({ "4" })
+	public int units;
+
+	@Param({ "5" })
+	public int range;
+
+	// Damage lookups in a turn: for each of our units, the tile it stands on,
+	// the eight tiles around it, shielding and the kill check
+	@Param({ "44" })
+	public int queries;
+
+	private IntSupplier perTile;
+	private IntSupplier scalarField;
+	private IntSupplier vectorField;
+
+	@Setup
+	public void setUp() throws ReflectiveOperationException {
+		perTile = Workloads.get("perTile", side, units, range, queries);
+		scalarField = Workloads.get("field", false, side, units, range,
+				queries);
+		vectorField = Workloads.get("field", true, side, units, range,
+				queries);
+	}
+
+	@Benchmark
+	public int perTile() {
+		return perTile.getAsInt();
+	}
+
+	@Benchmark
+	public int scalarField() {
+		return scalarField.getAsInt();
+	}
+
+	@Benchmark
+	public int vectorField() {
+		return vectorField.getAsInt();
+	}
+}
@@ -0,0 +1,53 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the scalar and vector DamageKernels by adding up the visibility
+ * masks of the enemies, the way DamageField.update does, on square maps of
+ * increasing size. Run it with scripts/run-jmh.sh.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DamageKernelBenchmark {
+
+	@Param({ "32", "128", "256" })
+	public int side;
+
+	@Param({ "4", "32" })
+	public int units;
+
+	// A range like those of the game's weapons, and a long one for wider rows
+	@Param({ "5", "16" })
+	public int range;
+
+	private IntSupplier scalar;
+	private IntSupplier vector;
+
+	@Setup
+	public void setUp() throws ReflectiveOperationException {
+		scalar = Workloads.get("kernel", false, side, units, range);
+		vector = Workloads.get("kernel", true, side, units, range);
+	}
+
+	@Benchmark
+	public int scalar() {
+		return scalar.getAsInt();
+	}
+
+	@Benchmark
+	public int vector() {
+		return vector.getAsInt();
+	}
+}
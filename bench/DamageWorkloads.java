@@ -0,0 +1,211 @@
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+import com.orbischallenge.game.engine.Point;
+
+/**
+ * The damage workloads the JMH benchmarks in bench/ measure. The bot's classes
+ * are in the default package, which a class in a named package can't import,
+ * and JMH refuses benchmarks in the default package, so the benchmarks look
+ * these factories up by reflection and time the IntSuppliers they return.
+ * <p>
+ * A board is a square map where one tile in eight is a wall, with enemies on
+ * random tiles. The World isn't available outside a game, so
+ * World.canShooterShootTarget is stood in for by a Bresenham line of sight
+ * check that stops at walls.
+ */
+public final class DamageWorkloads {
+
+	private DamageWorkloads() {
+	}
+
+	/**
+	 * Add the masks of the enemies up row by row with a kernel, without
+	 * clearing the field or looking anything up.
+	 *
+	 * @param vector
+	 *            Whether to use the vector kernel rather than the scalar one.
+	 */
+	public static IntSupplier kernel(boolean vector, int side, int units,
+			int range) {
+		Board board = new Board(side, units, range, 0);
+		DamageKernel kernel = kernel(vector);
+		int[] damage = new int[side * side];
+		int[] shooters = new int[side * side];
+		return () -> {
+			for (int u = 0; u < units; u++) {
+				DamageField.Visibility visibility = board.visibilities[u];
+				for (int row = 0; row < visibility.height; row++) {
+					kernel.accumulate(damage, shooters, (visibility.y0 + row)
+							* side + visibility.x0, visibility.mask, row
+							* visibility.width, visibility.width,
+							board.weaponDamages[u]);
+				}
+			}
+			return damage[board.enemyTiles[0]];
+		};
+	}
+
+	/**
+	 * One turn of damage lookups the way maximumPotentialDamageTaken used to
+	 * do them: ask whether every enemy can shoot each tile looked at.
+	 */
+	public static IntSupplier perTile(int side, int units, int range,
+			int queries) {
+		Board board = new Board(side, units, range, queries);
+		return () -> {
+			int sum = 0;
+			for (int tile : board.queryTiles) {
+				int amountOfDamageTaken = 0;
+				int damageMultiplier = 0;
+				for (int u = 0; u < units; u++) {
+					if (board.canShoot(board.enemyTiles[u], tile)) {
+						amountOfDamageTaken += board.weaponDamages[u];
+						damageMultiplier++;
+					}
+				}
+				sum += amountOfDamageTaken * damageMultiplier;
+			}
+			return sum;
+		};
+	}
+
+	/**
+	 * The same turn of lookups answered by building a DamageField from the
+	 * cached visibility masks and reading the tiles from it.
+	 *
+	 * @param vector
+	 *            Whether to use the vector kernel rather than the scalar one.
+	 */
+	public static IntSupplier field(boolean vector, int side, int units,
+			int range, int queries) {
+		Board board = new Board(side, units, range, queries);
+		GameMap map = new GameMap(side, side);
+		DamageField field = new DamageField(map, kernel(vector));
+		Point[] queryPoints = new Point[queries];
+		for (int q = 0; q < queries; q++) {
+			queryPoints[q] = map.point(board.queryTiles[q]);
+		}
+		return () -> {
+			field.clear();
+			for (int u = 0; u < units; u++) {
+				field.add(board.visibilities[u], board.weaponDamages[u]);
+			}
+			int sum = 0;
+			for (Point p : queryPoints) {
+				sum += field.damageAt(p);
+			}
+			return sum;
+		};
+	}
+
+	private static DamageKernel kernel(boolean vector) {
+		if (!vector) {
+			return new ScalarDamageKernel();
+		}
+		DamageKernel kernel = DamageKernel.create();
+		if (!(kernel instanceof VectorDamageKernel)) {
+			throw new IllegalStateException(
+					"run with --add-modules jdk.incubator.vector");
+		}
+		return kernel;
+	}
+
+	private static final class Board {
+		final int side;
+		final int range;
+		final boolean[] walls;
+		final int[] enemyTiles;
+		final int[] weaponDamages;
+		// What each enemy can hit, as DamageField caches it from the World
+		final DamageField.Visibility[] visibilities;
+		// The tiles looked at in a turn, near the enemies so that the line of
+		// sight checks don't stop at the range
+		final int[] queryTiles;
+
+		Board(int side, int units, int range, int queries) {
+			this.side = side;
+			this.range = range;
+			Random random = new Random(1);
+			walls = new boolean[side * side];
+			for (int t = 0; t < walls.length; t++) {
+				walls[t] = random.nextInt(8) == 0;
+			}
+			enemyTiles = new int[units];
+			weaponDamages = new int[units];
+			visibilities = new DamageField.Visibility[units];
+			for (int u = 0; u < units; u++) {
+				do {
+					enemyTiles[u] = random.nextInt(walls.length);
+				} while (walls[enemyTiles[u]]);
+				weaponDamages[u] = 1 + random.nextInt(5);
+				visibilities[u] = visibility(enemyTiles[u]);
+			}
+			queryTiles = new int[queries];
+			for (int q = 0; q < queries; q++) {
+				int enemy = enemyTiles[random.nextInt(units)];
+				int x = clamp(enemy % side + random.nextInt(2 * range + 1)
+						- range);
+				int y = clamp(enemy / side + random.nextInt(2 * range + 1)
+						- range);
+				queryTiles[q] = y * side + x;
+			}
+		}
+
+		private DamageField.Visibility visibility(int source) {
+			int x0 = Math.max(source % side - range, 0);
+			int y0 = Math.max(source / side - range, 0);
+			int x1 = Math.min(source % side + range, side - 1);
+			int y1 = Math.min(source / side + range, side - 1);
+			int width = x1 - x0 + 1;
+			int height = y1 - y0 + 1;
+			int[] mask = new int[width * height];
+			for (int y = y0; y <= y1; y++) {
+				for (int x = x0; x <= x1; x++) {
+					if (canShoot(source, y * side + x)) {
+						mask[(y - y0) * width + (x - x0)] = 1;
+					}
+				}
+			}
+			return new DamageField.Visibility(x0, y0, width, height, mask);
+		}
+
+		/**
+		 * Whether a shooter can hit a tile: it is in range and no wall lies
+		 * on the line between them.
+		 */
+		boolean canShoot(int shooter, int target) {
+			int x = shooter % side;
+			int y = shooter / side;
+			int tx = target % side;
+			int ty = target / side;
+			int dx = Math.abs(tx - x);
+			int dy = Math.abs(ty - y);
+			if (walls[target] || Math.max(dx, dy) > range) {
+				return false;
+			}
+			int stepX = x < tx ? 1 : -1;
+			int stepY = y < ty ? 1 : -1;
+			int error = dx - dy;
+			while (x != tx || y != ty) {
+				int doubled = 2 * error;
+				if (doubled > -dy) {
+					error -= dy;
+					x += stepX;
+				}
+				if (doubled < dx) {
+					error += dx;
+					y += stepY;
+				}
+				if (walls[y * side + x]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private int clamp(int coordinate) {
+			return Math.max(0, Math.min(side - 1, coordinate));
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package bench;
+
+import java.lang.reflect.Method;
+import java.util.function.IntSupplier;
+
+/**
+ * Looks up the factories of the default-package DamageWorkloads class, which
+ * the benchmarks can't name directly.
+ */
+final class Workloads {
+
+	private Workloads() {
+	}
+
+	/**
+	 * Call the DamageWorkloads factory with the given name and arguments.
+	 */
+	static IntSupplier get(String factory, Object... arguments)
+			throws ReflectiveOperationException {
+		for (Method method : Class.forName("DamageWorkloads").getMethods()) {
+			if (method.getName().equals(factory)
+					&& method.getParameterCount() == arguments.length) {
+				return (IntSupplier) method.invoke(null, arguments);
+			}
+		}
+		throw new NoSuchMethodException("DamageWorkloads." + factory);
+	}
+}
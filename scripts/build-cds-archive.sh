@@ -0,0 +1,23 @@
+#!/bin/sh
+# Builds an AppCDS archive of every class the bot, the game client and the
+# JDK load during one game, so later games map them from the archive instead
+# of loading and verifying them while the first turns are being played.
+#
+# Usage: scripts/build-cds-archive.sh <archive> <java arguments...>
+#   e.g. scripts/build-cds-archive.sh build/ctz.jsa \
+#            -cp build/classes:client.jar <client main class> <client args>
+set -e
+archive=$1
+shift
+
+if java -XX:+PrintFlagsFinal -version 2>/dev/null | grep -q ArchiveClassesAtExit; then
+	# JDK 13+: dynamic archive on top of the default JDK archive
+	java -XX:ArchiveClassesAtExit="$archive" "$@"
+else
+	# JDK 10-12: dump the class list, then build a static archive from it
+	classlist="$archive.classlist"
+	java -Xshare:off -XX:DumpLoadedClassList="$classlist" "$@"
+	java -Xshare:dump -XX:SharedClassListFile="$classlist" \
+		-XX:SharedArchiveFile="$archive" "$@"
+fi
+echo "Wrote $archive"
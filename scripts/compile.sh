@@ -0,0 +1,18 @@
+#!/bin/sh
+# Compiles the bot into build/classes.
+#
+# Usage: CTZ_CLIENT_JAR=path/to/client.jar scripts/compile.sh
+#
+# VectorDamageKernel is only compiled when the JDK has the incubating Vector
+# API; without it the bot uses ScalarDamageKernel.
+set -e
+cd "$(dirname "$0")/.."
+: "${CTZ_CLIENT_JAR:?set CTZ_CLIENT_JAR to the game client jar}"
+mkdir -p build/classes
+if java --add-modules jdk.incubator.vector -version > /dev/null 2>&1; then
+	javac --add-modules jdk.incubator.vector -cp "$CTZ_CLIENT_JAR" \
+		-d build/classes src/*.java
+else
+	javac -cp "$CTZ_CLIENT_JAR" -d build/classes \
+		$(ls src/*.java | grep -v VectorDamageKernel)
+fi
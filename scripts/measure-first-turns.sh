@@ -0,0 +1,28 @@
+#!/bin/sh
+# Plays one game in each start-up configuration and prints how long the bot
+# took for its first turns, as reported by the "Turn N took" log lines.
+#
+# Usage: scripts/measure-first-turns.sh <archive> <java arguments...>
+set -e
+archive=$1
+shift
+turns=${TURNS:-5}
+
+measure() {
+	label=$1
+	shift
+	echo "== $label"
+	"$@" 2>&1 | grep -E '^(Warmed up|Turn [0-9]+ took)' \
+		| head -n $((turns + 1))
+}
+
+measure "no warm-up, no CDS" java -Dctz.warmup=false "$@"
+measure "warm-up" java "$@"
+if [ -f "$archive" ]; then
+	measure "no warm-up, CDS" java -Xshare:auto \
+		-XX:SharedArchiveFile="$archive" -Dctz.warmup=false "$@"
+	measure "warm-up, CDS" java -Xshare:auto \
+		-XX:SharedArchiveFile="$archive" "$@"
+else
+	echo "No archive at $archive, skipping the CDS runs"
+fi
@@ -0,0 +1,18 @@
+#!/bin/sh
+# Runs the JMH benchmarks in bench/ against the bot's classes.
+#
+# Usage: CTZ_CLIENT_JAR=path/to/client.jar \
+#        JMH_CLASSPATH=jmh-core.jar:jmh-generator-annprocess.jar:jopt-simple.jar:commons-math3.jar \
+#        scripts/run-jmh.sh [JMH options]
+#
+# For example scripts/run-jmh.sh DamageKernelBenchmark -p side=256
+set -e
+cd "$(dirname "$0")/.."
+: "${CTZ_CLIENT_JAR:?set CTZ_CLIENT_JAR to the game client jar}"
+: "${JMH_CLASSPATH:?set JMH_CLASSPATH to the JMH jars}"
+mkdir -p build/bench
+javac --add-modules jdk.incubator.vector -cp "$CTZ_CLIENT_JAR:$JMH_CLASSPATH" \
+	-d build/bench src/*.java bench/*.java
+java --add-modules jdk.incubator.vector \
+	-cp "build/bench:$CTZ_CLIENT_JAR:$JMH_CLASSPATH" org.openjdk.jmh.Main \
+	-jvmArgsAppend "--add-modules jdk.incubator.vector" "$@"
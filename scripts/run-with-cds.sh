@@ -0,0 +1,9 @@
+#!/bin/sh
+# Runs the bot with an archive built by build-cds-archive.sh. The JVM falls
+# back to loading classes normally if the archive doesn't match.
+#
+# Usage: scripts/run-with-cds.sh <archive> <java arguments...>
+set -e
+archive=$1
+shift
+exec java -Xshare:auto -XX:SharedArchiveFile="$archive" "$@"
@@ -0,0 +1,61 @@
+#!/bin/sh
+# Plays a list of games and charts turn latency against the number of units
+# per team and the number of tiles on the map.
+#
+# Usage: scripts/scaling-benchmark.sh <games file> [output directory]
+#
+# Each line of the games file holds the java arguments for one game, for
+# example one line per team size and map variant. Blank lines and lines
+# starting with # are skipped. The per-turn measurements are written to
+# <output directory>/turns.csv, a summary per configuration to summary.csv
+# and, if gnuplot is installed, charts to units.png and tiles.png.
+set -e
+games=$1
+out=${2:-build/scaling}
+mkdir -p "$out"
+rm -f "$out/turns.csv"
+
+grep -v -e '^#' -e '^[[:space:]]*$' "$games" | while read -r args; do
+	echo "== $args"
+	# shellcheck disable=SC2086
+	java -Dctz.stats="$out/turns.csv" $args > /dev/null 2>&1 || true
+done
+
+# Median and maximum turn latency per configuration, skipping the first
+# turns while the JIT is still warming up
+awk -F, -v skip="${SKIP_TURNS:-5}" '
+	NR > 1 && $1 >= skip {
+		key = $2 "," $6
+		n[key]++
+		v[key, n[key]] = $7
+	}
+	END {
+		print "friendly_units,tiles,turns,median_us,max_us"
+		for (key in n) {
+			# insertion sort, the samples per configuration are small
+			for (i = 2; i <= n[key]; i++) {
+				x = v[key, i]
+				for (j = i - 1; j >= 1 && v[key, j] > x; j--)
+					v[key, j + 1] = v[key, j]
+				v[key, j + 1] = x
+			}
+			print key "," n[key] "," v[key, int((n[key] + 1) / 2)] "," v[key, n[key]]
+		}
+	}' "$out/turns.csv" | sort -t, -k1,1n -k2,2n > "$out/summary.csv"
+cat "$out/summary.csv"
+
+if command -v gnuplot > /dev/null; then
+	gnuplot <<GNUPLOT
+set datafile separator ","
+set terminal png size 800,500
+set key autotitle columnhead
+set ylabel "median turn latency (us)"
+set output "$out/units.png"
+set xlabel "units per team"
+plot "$out/summary.csv" using 1:4 with points pt 7 title "turns"
+set output "$out/tiles.png"
+set xlabel "map tiles"
+plot "$out/summary.csv" using 2:4 with points pt 7 title "turns"
+GNUPLOT
+	echo "Charts written to $out/units.png and $out/tiles.png"
+fi
@@ -0,0 +1,6 @@
+/**
+ * The actions a friendly unit can take in a turn.
+ */
+enum Action {
+	SHIELD, SHOOT, PICKUP, MOVE, STANDBY
+}
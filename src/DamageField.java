@@ -0,0 +1,200 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.orbischallenge.game.engine.Point;
+
+/**
+ * The damage living enemies can deal to every tile of the map next turn: the
+ * sum of the weapon damage of every enemy that can shoot the tile, times the
+ * number of those enemies. This is what maximumPotentialDamageTaken used to
+ * work out one tile at a time.
+ * <p>
+ * Which tiles a shooter can hit only depends on the walls, so the visibility
+ * mask for each shooter tile and weapon range is asked of the World once and
+ * cached for the rest of the game. Each turn the masks of the living enemies
+ * are added up row by row with a DamageKernel. Fields made with sibling()
+ * share the cache, so a field can be built on another thread from the masks
+ * this one has already asked for.
+ * <p>
+ * Only the boxes around the shooters are ever written, and clearing the field
+ * zeroes just the boxes added since the last clear, so building the field
+ * costs the same on any map size. The damage sum and the shooter count are
+ * multiplied when a tile is looked up rather than over the whole map.
+ */
+final class DamageField {
+
+	/**
+	 * The tiles a shooter standing on one tile can hit with one weapon range,
+	 * as a 0/1 mask over the bounding box of the range clipped to the map.
+	 */
+	static final class Visibility {
+		final int x0;
+		final int y0;
+		final int width;
+		final int height;
+		final int[] mask;
+
+		Visibility(int x0, int y0, int width, int height, int[] mask) {
+			this.x0 = x0;
+			this.y0 = y0;
+			this.width = width;
+			this.height = height;
+			this.mask = mask;
+		}
+	}
+
+	private final GameMap map;
+	private final DamageKernel kernel;
+	private final Map<Long, Visibility> visibilities;
+	// The summed weapon damage and the number of shooters of each tile
+	private final int[] damage;
+	private final int[] shooters;
+	// The masks added since the last clear()
+	private Visibility[] added = new Visibility[8];
+	private int addedCount;
+
+	DamageField(GameMap map, DamageKernel kernel) {
+		this(map, kernel, new ConcurrentHashMap<>());
+	}
+
+	private DamageField(GameMap map, DamageKernel kernel,
+			Map<Long, Visibility> visibilities) {
+		this.map = map;
+		this.kernel = kernel;
+		this.visibilities = visibilities;
+		this.damage = new int[map.size];
+		this.shooters = new int[map.size];
+	}
+
+	/**
+	 * @return A new, empty field for the same map that shares this field's
+	 *         visibility masks.
+	 */
+	DamageField sibling() {
+		return new DamageField(map, kernel, visibilities);
+	}
+
+	/**
+	 * @return True if this field was made for the map.
+	 */
+	boolean matches(GameMap map) {
+		return this.map == map;
+	}
+
+	/**
+	 * Recompute the field from the enemy positions at the start of a turn.
+	 */
+	void update(GameView world, GameView.Enemy[] enemyUnits) {
+		clear();
+		for (GameView.Enemy enemyUnit : enemyUnits) {
+			if (enemyUnit.getHealth() > 0) {
+				add(visibility(world, map.index(enemyUnit.getPosition()),
+						enemyUnit.getCurrentWeapon().getRange()), enemyUnit
+						.getCurrentWeapon().getDamage());
+			}
+		}
+	}
+
+	/**
+	 * Recompute the field from living enemies given as tiles and weapons,
+	 * using only visibility masks that have already been asked of the World.
+	 *
+	 * @return False, leaving the field incomplete, if a mask is missing.
+	 */
+	boolean update(int[] tiles, int[] ranges, int[] damages, int count) {
+		clear();
+		for (int e = 0; e < count; e++) {
+			Visibility visibility = visibilities.get(key(tiles[e], ranges[e]));
+			if (visibility == null) {
+				return false;
+			}
+			add(visibility, damages[e]);
+		}
+		return true;
+	}
+
+	/**
+	 * Remove every shooter from the field.
+	 */
+	void clear() {
+		for (int v = 0; v < addedCount; v++) {
+			Visibility visibility = added[v];
+			for (int row = 0; row < visibility.height; row++) {
+				int start = (visibility.y0 + row) * map.width + visibility.x0;
+				Arrays.fill(damage, start, start + visibility.width, 0);
+				Arrays.fill(shooters, start, start + visibility.width, 0);
+			}
+			added[v] = null;
+		}
+		addedCount = 0;
+	}
+
+	/**
+	 * Add one shooter to the field.
+	 */
+	void add(Visibility visibility, int weaponDamage) {
+		if (addedCount == added.length) {
+			added = Arrays.copyOf(added, 2 * added.length);
+		}
+		added[addedCount++] = visibility;
+		for (int row = 0; row < visibility.height; row++) {
+			kernel.accumulate(damage, shooters, (visibility.y0 + row)
+					* map.width + visibility.x0, visibility.mask, row
+					* visibility.width, visibility.width, weaponDamage);
+		}
+	}
+
+	/**
+	 * @return The maximum damage that enemies can deal to the point next turn.
+	 */
+	int damageAt(Point p) {
+		int tile = map.index(p);
+		// Each additional shooter multiplies the damage we expect to take
+		return damage[tile] * shooters[tile];
+	}
+
+	/**
+	 * @return True if a unit with the given health standing on the point can
+	 *         be killed next turn.
+	 */
+	boolean isLethal(Point p, int health) {
+		return health <= damageAt(p);
+	}
+
+	/**
+	 * Get the visibility mask of a shooter, asking the World for it the first
+	 * time. Tiles further than the range along either axis can't be in range,
+	 * whatever distance the World uses, so only the bounding box is checked.
+	 */
+	private Visibility visibility(GameView world, int source, int range) {
+		Long key = key(source, range);
+		Visibility visibility = visibilities.get(key);
+		if (visibility == null) {
+			Point shooter = map.point(source);
+			int x0 = Math.max(shooter.getX() - range, 0);
+			int y0 = Math.max(shooter.getY() - range, 0);
+			int x1 = Math.min(shooter.getX() + range, map.width - 1);
+			int y1 = Math.min(shooter.getY() + range, map.height - 1);
+			int width = x1 - x0 + 1;
+			int height = y1 - y0 + 1;
+			int[] mask = new int[width * height];
+			for (int y = y0; y <= y1; y++) {
+				for (int x = x0; x <= x1; x++) {
+					if (!map.isWall(y * map.width + x)
+							&& world.canShooterShootTarget(shooter, new Point(
+									x, y), range)) {
+						mask[(y - y0) * width + (x - x0)] = 1;
+					}
+				}
+			}
+			visibility = new Visibility(x0, y0, width, height, mask);
+			visibilities.put(key, visibility);
+		}
+		return visibility;
+	}
+
+	private static Long key(int source, int range) {
+		return (long) source << 16 | range;
+	}
+}
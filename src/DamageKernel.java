@@ -0,0 +1,39 @@
+/**
+ * The inner loop of the damage field: adding one row of a unit's visibility
+ * mask, weighted by its weapon damage, into the damage and shooter-count
+ * fields.
+ * <p>
+ * There is a scalar implementation and one that uses the incubating Vector
+ * API. The scalar kernel is the default: the weapons' mask rows are too short
+ * for the vector one to pay off, and in DamageFieldBenchmark the field built
+ * with it was slower on the larger maps. It only wins on long ranges with many
+ * enemies, so create() picks it only when asked to with -Dctz.simd=true and
+ * the jdk.incubator.vector module has been added to the JVM.
+ */
+interface DamageKernel {
+
+	/**
+	 * For each k in [0, length): damage[offset + k] += mask[maskOffset + k] *
+	 * weaponDamage and shooters[offset + k] += mask[maskOffset + k]. Masks
+	 * hold 0 or 1.
+	 */
+	void accumulate(int[] damage, int[] shooters, int offset, int[] mask,
+			int maskOffset, int length, int weaponDamage);
+
+	/**
+	 * @return The scalar kernel, or the vector one if it was asked for and
+	 *         this JVM supports it.
+	 */
+	static DamageKernel create() {
+		if (Boolean.getBoolean("ctz.simd")) {
+			try {
+				Class.forName("jdk.incubator.vector.IntVector");
+				return (DamageKernel) Class.forName("VectorDamageKernel")
+						.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// The Vector API isn't available, fall back to scalar code
+			}
+		}
+		return new ScalarDamageKernel();
+	}
+}
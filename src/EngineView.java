@@ -0,0 +1,304 @@
+import com.orbischallenge.ctz.objects.EnemyUnit;
+import com.orbischallenge.ctz.objects.FriendlyUnit;
+import com.orbischallenge.ctz.objects.World;
+import com.orbischallenge.ctz.objects.enums.ActivateShieldResult;
+import com.orbischallenge.ctz.objects.enums.Direction;
+import com.orbischallenge.ctz.objects.enums.MoveResult;
+import com.orbischallenge.ctz.objects.enums.PickupResult;
+import com.orbischallenge.ctz.objects.enums.PickupType;
+import com.orbischallenge.ctz.objects.enums.ShotResult;
+import com.orbischallenge.ctz.objects.enums.Team;
+import com.orbischallenge.ctz.objects.enums.TileType;
+import com.orbischallenge.ctz.objects.enums.WeaponType;
+import com.orbischallenge.game.engine.Point;
+
+/**
+ * GameView over the World and units the engine hands to PlayerAI.doMove().
+ * The engine's ControlPoint, Pickup and Unit are written out in full, since
+ * GameView's own types of those names shadow them here.
+ * <p>
+ * The wrappers are kept between turns and pointed at the engine's objects at
+ * the start of each one, so a turn allocates nothing unless the teams, the
+ * control points or the pickups change in number.
+ */
+final class EngineView implements GameView {
+
+	private World world;
+	private EngineFriendly[] friendlyUnits = new EngineFriendly[0];
+	private EngineEnemy[] enemyUnits = new EngineEnemy[0];
+	private EngineControlPoint[] controlPoints = new EngineControlPoint[0];
+	private EnginePickup[] pickups = new EnginePickup[0];
+
+	/**
+	 * Point the view at the state the engine hands us this turn.
+	 */
+	void update(World world, EnemyUnit[] enemyUnits,
+			FriendlyUnit[] friendlyUnits) {
+		this.world = world;
+		if (this.friendlyUnits.length != friendlyUnits.length) {
+			this.friendlyUnits = new EngineFriendly[friendlyUnits.length];
+			for (int i = 0; i < friendlyUnits.length; i++) {
+				this.friendlyUnits[i] = new EngineFriendly();
+			}
+		}
+		for (int i = 0; i < friendlyUnits.length; i++) {
+			this.friendlyUnits[i].unit = friendlyUnits[i];
+			this.friendlyUnits[i].attackers = null;
+		}
+		if (this.enemyUnits.length != enemyUnits.length) {
+			this.enemyUnits = new EngineEnemy[enemyUnits.length];
+			for (int j = 0; j < enemyUnits.length; j++) {
+				this.enemyUnits[j] = new EngineEnemy();
+			}
+		}
+		for (int j = 0; j < enemyUnits.length; j++) {
+			this.enemyUnits[j].unit = enemyUnits[j];
+		}
+		com.orbischallenge.ctz.objects.ControlPoint[] worldControlPoints = world
+				.getControlPoints();
+		if (controlPoints.length != worldControlPoints.length) {
+			controlPoints = new EngineControlPoint[worldControlPoints.length];
+			for (int c = 0; c < controlPoints.length; c++) {
+				controlPoints[c] = new EngineControlPoint();
+			}
+		}
+		for (int c = 0; c < controlPoints.length; c++) {
+			controlPoints[c].controlPoint = worldControlPoints[c];
+		}
+		com.orbischallenge.ctz.objects.Pickup[] worldPickups = world
+				.getPickups();
+		if (pickups.length != worldPickups.length) {
+			pickups = new EnginePickup[worldPickups.length];
+			for (int k = 0; k < pickups.length; k++) {
+				pickups[k] = new EnginePickup();
+			}
+		}
+		for (int k = 0; k < pickups.length; k++) {
+			pickups[k].pickup = worldPickups[k];
+		}
+	}
+
+	@Override
+	public int getWidth() {
+		return world.getWidth();
+	}
+
+	@Override
+	public int getHeight() {
+		return world.getHeight();
+	}
+
+	@Override
+	public TileType getTile(Point p) {
+		return world.getTile(p);
+	}
+
+	@Override
+	public Friendly[] getFriendlyUnits() {
+		return friendlyUnits;
+	}
+
+	@Override
+	public Enemy[] getEnemyUnits() {
+		return enemyUnits;
+	}
+
+	@Override
+	public ControlPoint[] getControlPoints() {
+		return controlPoints;
+	}
+
+	@Override
+	public Pickup[] getPickups() {
+		return pickups;
+	}
+
+	@Override
+	public Pickup getPickupAtPosition(Point p) {
+		com.orbischallenge.ctz.objects.Pickup pickup = world
+				.getPickupAtPosition(p);
+		if (pickup == null) {
+			return null;
+		}
+		for (EnginePickup wrapper : pickups) {
+			if (wrapper.pickup == pickup) {
+				return wrapper;
+			}
+		}
+		EnginePickup wrapper = new EnginePickup();
+		wrapper.pickup = pickup;
+		return wrapper;
+	}
+
+	@Override
+	public int getPathLength(Point from, Point to) {
+		return world.getPathLength(from, to);
+	}
+
+	@Override
+	public boolean canShooterShootTarget(Point shooter, Point target,
+			int range) {
+		return world.canShooterShootTarget(shooter, target, range);
+	}
+
+	/**
+	 * @return The wrapper of an enemy unit the engine handed us.
+	 */
+	private EngineEnemy wrap(EnemyUnit enemyUnit) {
+		for (EngineEnemy wrapper : enemyUnits) {
+			if (wrapper.unit == enemyUnit) {
+				return wrapper;
+			}
+		}
+		EngineEnemy wrapper = new EngineEnemy();
+		wrapper.unit = enemyUnit;
+		return wrapper;
+	}
+
+	private abstract static class EngineUnit implements Unit {
+		abstract com.orbischallenge.ctz.objects.Unit unit();
+
+		@Override
+		public Point getPosition() {
+			return unit().getPosition();
+		}
+
+		@Override
+		public int getHealth() {
+			return unit().getHealth();
+		}
+
+		@Override
+		public WeaponType getCurrentWeapon() {
+			return unit().getCurrentWeapon();
+		}
+
+		@Override
+		public Team getTeam() {
+			return unit().getTeam();
+		}
+
+		@Override
+		public String getASCIIIcon() {
+			return unit().getASCIIIcon();
+		}
+	}
+
+	private static final class EngineEnemy extends EngineUnit implements
+			Enemy {
+		EnemyUnit unit;
+
+		@Override
+		com.orbischallenge.ctz.objects.Unit unit() {
+			return unit;
+		}
+	}
+
+	private final class EngineFriendly extends EngineUnit implements
+			Friendly {
+		FriendlyUnit unit;
+		// The enemies who shot the unit last turn, wrapped the first time
+		// they are asked for this turn
+		Enemy[] attackers;
+
+		@Override
+		com.orbischallenge.ctz.objects.Unit unit() {
+			return unit;
+		}
+
+		@Override
+		public MoveResult checkMove(Direction direction) {
+			return unit.checkMove(direction);
+		}
+
+		@Override
+		public ShotResult checkShotAgainstEnemy(Enemy enemy) {
+			return unit.checkShotAgainstEnemy(((EngineEnemy) enemy).unit);
+		}
+
+		@Override
+		public ActivateShieldResult checkShieldActivation() {
+			return unit.checkShieldActivation();
+		}
+
+		@Override
+		public PickupResult checkPickupResult() {
+			return unit.checkPickupResult();
+		}
+
+		@Override
+		public int getDamageTakenLastTurn() {
+			return unit.getDamageTakenLastTurn();
+		}
+
+		@Override
+		public Enemy[] getEnemiesWhoShotMeLastTurn() {
+			if (attackers == null) {
+				EnemyUnit[] shooters = unit.getEnemiesWhoShotMeLastTurn();
+				attackers = new Enemy[shooters.length];
+				for (int s = 0; s < shooters.length; s++) {
+					attackers[s] = wrap(shooters[s]);
+				}
+			}
+			return attackers;
+		}
+
+		@Override
+		public void move(Direction direction) {
+			unit.move(direction);
+		}
+
+		@Override
+		public void shootAt(Enemy enemy) {
+			unit.shootAt(((EngineEnemy) enemy).unit);
+		}
+
+		@Override
+		public void activateShield() {
+			unit.activateShield();
+		}
+
+		@Override
+		public void pickupItemAtPosition() {
+			unit.pickupItemAtPosition();
+		}
+
+		@Override
+		public void standby() {
+			unit.standby();
+		}
+	}
+
+	private static final class EngineControlPoint implements ControlPoint {
+		com.orbischallenge.ctz.objects.ControlPoint controlPoint;
+
+		@Override
+		public Point getPosition() {
+			return controlPoint.getPosition();
+		}
+
+		@Override
+		public Team getControllingTeam() {
+			return controlPoint.getControllingTeam();
+		}
+
+		@Override
+		public boolean isMainframe() {
+			return controlPoint.isMainframe();
+		}
+	}
+
+	private static final class EnginePickup implements Pickup {
+		com.orbischallenge.ctz.objects.Pickup pickup;
+
+		@Override
+		public Point getPosition() {
+			return pickup.getPosition();
+		}
+
+		@Override
+		public PickupType getPickupType() {
+			return pickup.getPickupType();
+		}
+	}
+}
@@ -0,0 +1,403 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Scores an action as the sum of independent stages, one per heuristic term,
+ * run in the order they were added.
+ * <p>
+ * Every stage has a weight, read from -Dctz.weight.&lt;stage&gt; and 1 by
+ * default. Stages with weight 0 are never run. Each stage also has an upper
+ * bound on its score for a unit, so that a candidate is dropped as soon as
+ * the stages left can't lift it above the score it must beat.
+ * <p>
+ * A stage declares the Inputs it reads: values that don't depend on the tile
+ * being scored, such as what each control point is worth. An Input is
+ * computed once per turn, or once per unit per turn, just before the first
+ * stage that declares it is bounded, and every stage and pipeline declaring
+ * it reads the same result. Stages with weight 0 never cause their Inputs to
+ * be computed.
+ * <p>
+ * With -Dctz.stats the runs, skips and time of each stage, and how often each
+ * Input was computed or reused, are counted every turn. Each run of a stage
+ * is a FlightEvents.Stage event when those are being recorded.
+ */
+final class EvaluatorPipeline {
+
+	/**
+	 * Returned by score() for a candidate that can't beat mustBeat.
+	 */
+	static final int PRUNED = Integer.MIN_VALUE;
+
+	/**
+	 * One heuristic term.
+	 */
+	interface Term {
+		/**
+		 * @param unit
+		 *            The index of the unit being evaluated.
+		 * @param tile
+		 *            The tile being evaluated.
+		 * @param target
+		 *            Offered whatever the term considers the main reason for
+		 *            its score, such as the tile it heads for.
+		 * @return The score of the term.
+		 */
+		int score(int unit, int tile, Target target);
+	}
+
+	/**
+	 * An upper bound on a term for every tile a unit can be evaluated on.
+	 */
+	interface Bound {
+		int bound(int unit);
+	}
+
+	/**
+	 * The target that contributes the most points to a score.
+	 */
+	static final class Target {
+		int target = -1;
+		double points;
+
+		/**
+		 * Make the target the best so far if it is worth more points than the
+		 * current one.
+		 */
+		void offer(int target, double points) {
+			if (points > this.points) {
+				this.target = target;
+				this.points = points;
+			}
+		}
+
+		/**
+		 * Make the target the one the score is for, whatever else has been
+		 * offered.
+		 */
+		void choose(int target) {
+			this.target = target;
+			this.points = Double.POSITIVE_INFINITY;
+		}
+
+		void reset() {
+			target = -1;
+			points = 0;
+		}
+	}
+
+	/**
+	 * A value computed at most once per turn, or once per unit per turn, for
+	 * the stages that declare it. It is computed by a callback that leaves it
+	 * wherever the stages read it from.
+	 */
+	static final class Input {
+		private final String name;
+		private final IntConsumer compute;
+		private final boolean perUnit;
+		// The pipeline that prints the statistics of the input
+		private EvaluatorPipeline owner;
+		// Advanced by beginTurn() of every pipeline that declares the input
+		private int turn = 1;
+		// The turn the value was computed in, or the turn each unit's was
+		private int computedTurn;
+		private int[] unitTurns = new int[0];
+
+		// This turn's statistics, kept with -Dctz.stats
+		private int computes;
+		private int reuses;
+		private long nanos;
+
+		private Input(String name, IntConsumer compute, boolean perUnit) {
+			this.name = name;
+			this.compute = compute;
+			this.perUnit = perUnit;
+		}
+
+		/**
+		 * @return An input whose value is the same for every unit.
+		 */
+		static Input perTurn(String name, Runnable compute) {
+			return new Input(name, unit -> compute.run(), false);
+		}
+
+		/**
+		 * @param compute
+		 *            Called with the index of the unit to compute the value
+		 *            for.
+		 * @return An input with a value for each unit.
+		 */
+		static Input perUnit(String name, IntConsumer compute) {
+			return new Input(name, compute, true);
+		}
+
+		/**
+		 * Compute the value for a unit unless it was already computed this
+		 * turn. Inputs that are the same for every unit ignore the unit.
+		 */
+		void ensure(int unit) {
+			if (perUnit) {
+				if (unit >= unitTurns.length) {
+					unitTurns = Arrays.copyOf(unitTurns, unit + 1);
+				}
+				if (unitTurns[unit] == turn) {
+					reuses++;
+					return;
+				}
+				unitTurns[unit] = turn;
+			} else {
+				if (computedTurn == turn) {
+					reuses++;
+					return;
+				}
+				computedTurn = turn;
+			}
+			if (STATISTICS) {
+				long start = System.nanoTime();
+				compute.accept(unit);
+				nanos += System.nanoTime() - start;
+				computes++;
+			} else {
+				compute.accept(unit);
+			}
+		}
+
+		private void beginTurn() {
+			turn++;
+			computes = 0;
+			reuses = 0;
+			nanos = 0;
+		}
+	}
+
+	// Whether to count and time the stages, with -Dctz.stats
+	private static final boolean STATISTICS = TurnStats.enabled();
+
+	private static final class Stage {
+		final String name;
+		final Term term;
+		final Bound bound;
+		final double weight;
+		final Input[] inputs;
+
+		// This turn's statistics, kept with -Dctz.stats
+		int runs;
+		int skips;
+		long nanos;
+
+		Stage(String name, Term term, Bound bound, double weight,
+				Input[] inputs) {
+			this.name = name;
+			this.term = term;
+			this.bound = bound;
+			this.weight = weight;
+			this.inputs = inputs;
+		}
+	}
+
+	private final String name;
+	private final List<Stage> stages = new ArrayList<>();
+	// Every input a stage declares, once each
+	private final List<Input> inputs = new ArrayList<>();
+	// The weighted bound of each stage for the unit last passed to bound()
+	private long[] bounds = new long[0];
+	private final Target stageTarget = new Target();
+	// Whether this turn's stage runs are recorded as flight events
+	private boolean recordingStages;
+
+	EvaluatorPipeline(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Add a stage that runs after the ones already added.
+	 *
+	 * @param stageName
+	 *            The name of the stage, also used for its weight property.
+	 * @param term
+	 *            The term the stage computes.
+	 * @param bound
+	 *            An upper bound on the term.
+	 * @param inputs
+	 *            The inputs the term and the bound read.
+	 * @return This pipeline.
+	 */
+	EvaluatorPipeline add(String stageName, Term term, Bound bound,
+			Input... inputs) {
+		double weight = Double.parseDouble(System.getProperty("ctz.weight."
+				+ stageName, "1"));
+		if (weight < 0) {
+			throw new IllegalArgumentException("Weight of " + stageName
+					+ " must not be negative");
+		}
+		stages.add(new Stage(stageName, term, bound, weight, inputs));
+		bounds = new long[stages.size()];
+		for (Input input : inputs) {
+			if (!this.inputs.contains(input)) {
+				this.inputs.add(input);
+			}
+			if (input.owner == null) {
+				input.owner = this;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Start a new turn, dropping the statistics of the last turn and the
+	 * values of the inputs. Must be called before any input is ensured in the
+	 * turn.
+	 *
+	 * @param recordStages
+	 *            Whether the stage runs may be recorded as flight events,
+	 *            false for synthetic turns.
+	 */
+	void beginTurn(boolean recordStages) {
+		recordingStages = recordStages && FlightEvents.recordingStages();
+		for (Input input : inputs) {
+			input.beginTurn();
+		}
+		for (Stage stage : stages) {
+			stage.runs = 0;
+			stage.skips = 0;
+			stage.nanos = 0;
+		}
+	}
+
+	/**
+	 * Compute an upper bound on score() for a unit, computing the inputs of
+	 * every stage that runs first. Must be called before score() for that
+	 * unit.
+	 *
+	 * @param unit
+	 *            The index of the unit we are interested in.
+	 * @return The sum of the weighted bounds of every stage.
+	 */
+	int bound(int unit) {
+		long sum = 0;
+		for (int s = 0; s < stages.size(); s++) {
+			Stage stage = stages.get(s);
+			if (stage.weight != 0) {
+				for (Input input : stage.inputs) {
+					input.ensure(unit);
+				}
+			}
+			if (stage.weight == 0) {
+				bounds[s] = 0;
+			} else if (stage.weight == 1) {
+				bounds[s] = stage.bound.bound(unit);
+			} else {
+				bounds[s] = (long) Math.ceil(stage.bound.bound(unit)
+						* stage.weight);
+			}
+			sum += bounds[s];
+		}
+		return (int) Math.max(Integer.MIN_VALUE + 1,
+				Math.min(Integer.MAX_VALUE, sum));
+	}
+
+	/**
+	 * Score a unit on a tile, stopping early if the stages left can't lift
+	 * the score above mustBeat.
+	 *
+	 * @param unit
+	 *            The index of the unit we are interested in.
+	 * @param tile
+	 *            The tile we are interested in.
+	 * @param mustBeat
+	 *            The score to beat, or Integer.MIN_VALUE.
+	 * @param target
+	 *            Reset, then offered the targets of every stage.
+	 * @return The weighted sum of the stages, or PRUNED.
+	 */
+	int score(int unit, int tile, int mustBeat, Target target) {
+		target.reset();
+		long remaining = 0;
+		for (long bound : bounds) {
+			remaining += bound;
+		}
+		long points = 0;
+		for (int s = 0; s < stages.size(); s++) {
+			Stage stage = stages.get(s);
+			if (mustBeat != Integer.MIN_VALUE
+					&& points + remaining <= mustBeat) {
+				if (STATISTICS) {
+					for (int rest = s; rest < stages.size(); rest++) {
+						stages.get(rest).skips++;
+					}
+				}
+				return PRUNED;
+			}
+			remaining -= bounds[s];
+			if (stage.weight == 0) {
+				continue;
+			}
+			int stageScore = run(stage, unit, tile);
+			points += stage.weight == 1 ? stageScore
+					: (int) (stageScore * stage.weight);
+			if (stageTarget.target >= 0) {
+				target.offer(stageTarget.target, stageTarget.points
+						* stage.weight);
+			}
+		}
+		return (int) Math.max(Integer.MIN_VALUE + 1,
+				Math.min(Integer.MAX_VALUE, points));
+	}
+
+	/**
+	 * Run a stage, leaving its target in stageTarget.
+	 */
+	private int run(Stage stage, int unit, int tile) {
+		stageTarget.reset();
+		FlightEvents.Stage event = null;
+		if (recordingStages) {
+			event = new FlightEvents.Stage();
+			event.begin();
+		}
+		int score;
+		if (STATISTICS) {
+			long start = System.nanoTime();
+			score = stage.term.score(unit, tile, stageTarget);
+			stage.nanos += System.nanoTime() - start;
+			stage.runs++;
+		} else {
+			score = stage.term.score(unit, tile, stageTarget);
+		}
+		if (event != null && event.shouldCommit()) {
+			event.pipeline = name;
+			event.stage = stage.name;
+			event.unit = unit;
+			event.tile = tile;
+			event.score = score;
+			event.commit();
+		}
+		return score;
+	}
+
+	/**
+	 * Print how often each stage ran or was skipped this turn, and how long it
+	 * ran for, and the same for the inputs first declared in this pipeline.
+	 * Only counted with -Dctz.stats.
+	 */
+	void printStatistics() {
+		for (Stage stage : stages) {
+			if (stage.runs + stage.skips == 0) {
+				continue;
+			}
+			System.out.println("  " + name + "." + stage.name + ": "
+					+ stage.runs + " runs, " + stage.skips + " skipped, "
+					+ stage.nanos / 1000 + " us"
+					+ (stage.weight == 1 ? "" : " (weight " + stage.weight
+							+ ")"));
+		}
+		for (Input input : inputs) {
+			if (input.owner != this || input.computes + input.reuses == 0) {
+				continue;
+			}
+			System.out.println("  " + name + "." + input.name + ": "
+					+ input.computes + " computed, " + input.reuses
+					+ " reused, " + input.nanos / 1000 + " us");
+		}
+	}
+}
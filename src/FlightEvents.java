@@ -0,0 +1,152 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the work PlayerAI does each turn, so that a
+ * recording shows turn latency next to GC pauses, JIT deoptimizations and
+ * the board situation that caused it.
+ * <p>
+ * Every event is a duration event. Turn, Phase and Decision are enabled by
+ * default and cheap enough to leave on: a few per unit per turn. Stage fires
+ * for every heuristic stage the evaluator pipelines run, so it is disabled by
+ * default and has to be turned on in the recording settings, e.g. with
+ * -XX:StartFlightRecording:settings=profile,+ctz.Stage#enabled=true on JDK
+ * 17 or in a custom .jfc file.
+ * <p>
+ * When an event is disabled, begin() and commit() do nothing and the event
+ * objects don't escape, so the JIT can remove them. The fields are only
+ * filled in after shouldCommit().
+ */
+final class FlightEvents {
+
+	private static final String CATEGORY = "Cyber Team Zero";
+
+	private FlightEvents() {
+	}
+
+	/**
+	 * One call to PlayerAI.doMove(), from the moment the engine hands us the
+	 * world until every unit has its action.
+	 */
+	@Name("ctz.Turn")
+	@Label("Turn")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static final class Turn extends Event {
+		@Label("Turn")
+		int turn;
+		@Label("Map Width")
+		int mapWidth;
+		@Label("Map Height")
+		int mapHeight;
+		@Label("Living Friendly Units")
+		int friendlyUnits;
+		@Label("Living Enemy Units")
+		int enemyUnits;
+		@Label("Control Points")
+		int controlPoints;
+		@Label("Pickups")
+		int pickups;
+	}
+
+	/**
+	 * One of the start-of-turn phases, such as updating the damage field.
+	 */
+	@Name("ctz.Phase")
+	@Label("Turn Phase")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static final class Phase extends Event {
+		@Label("Turn")
+		int turn;
+		@Label("Phase")
+		String phase;
+		@Label("Speculative")
+		@Description("Whether the result was built ahead of the turn by the speculator")
+		boolean speculative;
+	}
+
+	/**
+	 * The decision for one unit: the points of each action and the action
+	 * taken.
+	 */
+	@Name("ctz.Decision")
+	@Label("Unit Decision")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static final class Decision extends Event {
+		@Label("Turn")
+		int turn;
+		@Label("Unit")
+		int unit;
+		@Label("Action")
+		String action;
+		@Label("Move Points")
+		int movePoints;
+		@Label("Shoot Points")
+		int shootPoints;
+		@Label("Shield Points")
+		int shieldPoints;
+		@Label("Pickup Points")
+		int pickupPoints;
+		@Label("Evaluated Actions")
+		@Description("Bit n is set if the action with ordinal n was scored; the points of the others are 0")
+		int evaluated;
+		@Label("Cached")
+		@Description("Whether the decision came from the transposition table")
+		boolean cached;
+	}
+
+	/**
+	 * One run of a heuristic stage of an evaluator pipeline for a unit on a
+	 * tile, such as the threat stage of the move pipeline.
+	 */
+	@Name("ctz.Stage")
+	@Label("Heuristic Stage")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	@Enabled(false)
+	static final class Stage extends Event {
+		@Label("Pipeline")
+		String pipeline;
+		@Label("Stage")
+		String stage;
+		@Label("Unit")
+		int unit;
+		@Label("Tile")
+		int tile;
+		@Label("Score")
+		int score;
+	}
+
+	private static final EventType STAGE_TYPE = EventType
+			.getEventType(Stage.class);
+
+	/**
+	 * @return Whether Stage events are being recorded. Checked once per turn
+	 *         so that the pipelines don't create an event per stage run
+	 *         otherwise.
+	 */
+	static boolean recordingStages() {
+		return STAGE_TYPE.isEnabled();
+	}
+
+	/**
+	 * Commit a Phase event started with begin() if it is being recorded.
+	 */
+	static void commit(Phase event, int turn, String phase,
+			boolean speculative) {
+		if (event.shouldCommit()) {
+			event.turn = turn;
+			event.phase = phase;
+			event.speculative = speculative;
+			event.commit();
+		}
+	}
+}
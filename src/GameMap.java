@@ -0,0 +1,148 @@
+import java.util.Arrays;
+
+import com.orbischallenge.ctz.objects.enums.Direction;
+import com.orbischallenge.ctz.objects.enums.TileType;
+import com.orbischallenge.game.engine.Point;
+
+/**
+ * Maps the tiles of the current world onto a flat, row-major index space so
+ * that per-tile state can be stored in plain arrays and bitboards. Also keeps
+ * the static layout of the map: which tiles are walls and which tiles can be
+ * reached from each tile in one move.
+ */
+final class GameMap {
+
+	final int width;
+	final int height;
+	final int size;
+
+	private final boolean[] walls;
+	// neighbours[t] holds the passable tiles one move away from tile t
+	private final int[][] neighbours;
+
+	GameMap(GameView world) {
+		this(world.getWidth(), world.getHeight(), readWalls(world));
+	}
+
+	/**
+	 * Build an open map without walls.
+	 */
+	GameMap(int width, int height) {
+		this(width, height, new boolean[width * height]);
+	}
+
+	private GameMap(int width, int height, boolean[] walls) {
+		this.width = width;
+		this.height = height;
+		this.size = width * height;
+		this.walls = walls;
+		this.neighbours = new int[size][];
+		Direction[] directions = Direction.values();
+		int[] buffer = new int[directions.length];
+		for (int t = 0; t < size; t++) {
+			int count = 0;
+			Point p = point(t);
+			for (Direction d : directions) {
+				Point q = d.movePoint(p);
+				if (contains(q) && index(q) != t && !walls[index(q)]) {
+					buffer[count++] = index(q);
+				}
+			}
+			neighbours[t] = Arrays.copyOf(buffer, count);
+		}
+	}
+
+	private static boolean[] readWalls(GameView world) {
+		boolean[] walls = new boolean[world.getWidth() * world.getHeight()];
+		for (int y = 0; y < world.getHeight(); y++) {
+			for (int x = 0; x < world.getWidth(); x++) {
+				walls[y * world.getWidth() + x] = world.getTile(new Point(x, y)) == TileType.WALL;
+			}
+		}
+		return walls;
+	}
+
+	/**
+	 * Determine whether this map was built for a world of the same dimensions.
+	 *
+	 * @param world
+	 *            The world we are interested in.
+	 * @return True if the map can be reused for the given world.
+	 */
+	boolean matches(GameView world) {
+		return world.getWidth() == width && world.getHeight() == height;
+	}
+
+	/**
+	 * Determine whether a point lies within the bounds of the map.
+	 *
+	 * @param p
+	 *            The point we are interested in.
+	 * @return True if the point is on the map, false otherwise.
+	 */
+	boolean contains(Point p) {
+		return p.getX() >= 0 && p.getX() < width && p.getY() >= 0
+				&& p.getY() < height;
+	}
+
+	/**
+	 * @param p
+	 *            A point on the map.
+	 * @return The flat index of that point.
+	 */
+	int index(Point p) {
+		return p.getY() * width + p.getX();
+	}
+
+	/**
+	 * @return True if the tile at the flat index is a wall.
+	 */
+	boolean isWall(int index) {
+		return walls[index];
+	}
+
+	/**
+	 * @return The passable tiles one move away from the tile at the flat
+	 *         index. The returned array must not be modified.
+	 */
+	int[] neighbours(int index) {
+		return neighbours[index];
+	}
+
+	/**
+	 * Count the moves from one tile to every other tile, ignoring units.
+	 *
+	 * @param from
+	 *            The flat index to start from.
+	 * @param distances
+	 *            Filled with the number of moves to each tile, or
+	 *            Integer.MAX_VALUE for tiles that can't be reached.
+	 * @param queue
+	 *            A scratch buffer of at least size elements.
+	 */
+	void distances(int from, int[] distances, int[] queue) {
+		Arrays.fill(distances, Integer.MAX_VALUE);
+		distances[from] = 0;
+		queue[0] = from;
+		int head = 0;
+		int tail = 1;
+		while (head < tail) {
+			int tile = queue[head++];
+			for (int neighbour : neighbours[tile]) {
+				if (distances[neighbour] == Integer.MAX_VALUE) {
+					distances[neighbour] = distances[tile] + 1;
+					queue[tail++] = neighbour;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param index
+	 *            A flat index on the map.
+	 * @return The point at that index.
+	 */
+	Point point(int index) {
+		return new Point(index % width, index / width);
+	}
+}
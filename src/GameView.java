@@ -0,0 +1,113 @@
+import com.orbischallenge.ctz.objects.enums.ActivateShieldResult;
+import com.orbischallenge.ctz.objects.enums.Direction;
+import com.orbischallenge.ctz.objects.enums.MoveResult;
+import com.orbischallenge.ctz.objects.enums.PickupResult;
+import com.orbischallenge.ctz.objects.enums.PickupType;
+import com.orbischallenge.ctz.objects.enums.ShotResult;
+import com.orbischallenge.ctz.objects.enums.Team;
+import com.orbischallenge.ctz.objects.enums.TileType;
+import com.orbischallenge.ctz.objects.enums.WeaponType;
+import com.orbischallenge.game.engine.Point;
+
+/**
+ * Everything PlayerAI reads from a turn of the game, and the orders it gives
+ * back, named after the engine methods they stand for.
+ * <p>
+ * The engine doesn't let us build a World of our own, so PlayerAI plays
+ * through this instead: EngineView adapts the World and units the engine
+ * hands to doMove(), and WarmUp implements it over a synthetic game, so that
+ * the warm-up runs the same decision code as a real turn.
+ */
+interface GameView {
+
+	int getWidth();
+
+	int getHeight();
+
+	TileType getTile(Point p);
+
+	/**
+	 * @return Our units, in the same order every turn.
+	 */
+	Friendly[] getFriendlyUnits();
+
+	/**
+	 * @return The enemy units, in the same order every turn.
+	 */
+	Enemy[] getEnemyUnits();
+
+	ControlPoint[] getControlPoints();
+
+	Pickup[] getPickups();
+
+	/**
+	 * @return The pickup at a point, or null if there is none.
+	 */
+	Pickup getPickupAtPosition(Point p);
+
+	int getPathLength(Point from, Point to);
+
+	boolean canShooterShootTarget(Point shooter, Point target, int range);
+
+	/**
+	 * A unit of either team.
+	 */
+	interface Unit {
+		Point getPosition();
+
+		int getHealth();
+
+		WeaponType getCurrentWeapon();
+
+		Team getTeam();
+
+		String getASCIIIcon();
+	}
+
+	/**
+	 * One of our units, which can be checked for and given orders.
+	 */
+	interface Friendly extends Unit {
+		MoveResult checkMove(Direction direction);
+
+		ShotResult checkShotAgainstEnemy(Enemy enemy);
+
+		ActivateShieldResult checkShieldActivation();
+
+		PickupResult checkPickupResult();
+
+		int getDamageTakenLastTurn();
+
+		Enemy[] getEnemiesWhoShotMeLastTurn();
+
+		void move(Direction direction);
+
+		void shootAt(Enemy enemy);
+
+		void activateShield();
+
+		void pickupItemAtPosition();
+
+		void standby();
+	}
+
+	/**
+	 * One of the enemy's units.
+	 */
+	interface Enemy extends Unit {
+	}
+
+	interface ControlPoint {
+		Point getPosition();
+
+		Team getControllingTeam();
+
+		boolean isMainframe();
+	}
+
+	interface Pickup {
+		Point getPosition();
+
+		PickupType getPickupType();
+	}
+}
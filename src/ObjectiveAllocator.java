@@ -0,0 +1,149 @@
+import java.util.Arrays;
+
+/**
+ * Shares the objectives on the map out between the units of a team.
+ * <p>
+ * First every unit is matched with a different objective so that the sum of
+ * the utilities of the matched pairs is as high as possible, using the
+ * Hungarian algorithm. Then every objective that is worth something but was
+ * left over goes to the unit that values it most. Each objective ends up
+ * with at most one unit, so no two units chase the same one.
+ */
+final class ObjectiveAllocator {
+
+	static final int UNASSIGNED = -1;
+
+	// owners[o] is the unit objective o was given to, or UNASSIGNED
+	private int[] owners = new int[0];
+
+	// Buffers for the Hungarian algorithm, 1-indexed as in the usual
+	// formulation, with column 0 as the sentinel
+	private double[] rowPotentials = new double[0];
+	private double[] columnPotentials = new double[0];
+	private double[] minima = new double[0];
+	private int[] matches = new int[0];
+	private int[] ways = new int[0];
+	private boolean[] used = new boolean[0];
+
+	/**
+	 * Share the objectives out.
+	 *
+	 * @param utilities
+	 *            utilities[u][o] is how much unit u gains by heading for
+	 *            objective o. Objectives no unit values above 0 are left
+	 *            unassigned, and so are the units given as null rows.
+	 * @param units
+	 *            The number of units.
+	 * @param objectives
+	 *            The number of objectives.
+	 */
+	void allocate(double[][] utilities, int units, int objectives) {
+		if (owners.length < objectives) {
+			owners = new int[objectives];
+		}
+		Arrays.fill(owners, UNASSIGNED);
+		// Pad with objectives worth nothing so there are at least as many
+		// columns as rows
+		int columns = Math.max(units, objectives);
+		match(utilities, units, objectives, columns);
+		for (int j = 1; j <= objectives; j++) {
+			int u = matches[j] - 1;
+			if (u >= 0 && utilities[u] != null && utilities[u][j - 1] > 0) {
+				owners[j - 1] = u;
+			}
+		}
+
+		// Give the objectives nobody was matched with to whoever values them
+		// most
+		for (int o = 0; o < objectives; o++) {
+			if (owners[o] != UNASSIGNED) {
+				continue;
+			}
+			double best = 0;
+			for (int u = 0; u < units; u++) {
+				if (utilities[u] != null && utilities[u][o] > best) {
+					best = utilities[u][o];
+					owners[o] = u;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The unit the objective was given to by the last allocate(), or
+	 *         UNASSIGNED.
+	 */
+	int owner(int objective) {
+		return owners[objective];
+	}
+
+	/**
+	 * Minimum cost assignment of rows to columns, with cost the negated
+	 * utility. Leaves the row matched with each column in matches.
+	 */
+	private void match(double[][] utilities, int rows, int objectives,
+			int columns) {
+		if (matches.length < columns + 1 || rowPotentials.length < rows + 1) {
+			int size = Math.max(columns, rows) + 1;
+			rowPotentials = new double[size];
+			columnPotentials = new double[size];
+			minima = new double[size];
+			matches = new int[size];
+			ways = new int[size];
+			used = new boolean[size];
+		}
+		Arrays.fill(rowPotentials, 0);
+		Arrays.fill(columnPotentials, 0);
+		Arrays.fill(matches, 0);
+		for (int i = 1; i <= rows; i++) {
+			matches[0] = i;
+			int column = 0;
+			Arrays.fill(minima, 0, columns + 1, Double.POSITIVE_INFINITY);
+			Arrays.fill(used, 0, columns + 1, false);
+			do {
+				used[column] = true;
+				int row = matches[column];
+				double delta = Double.POSITIVE_INFINITY;
+				int next = 0;
+				for (int j = 1; j <= columns; j++) {
+					if (used[j]) {
+						continue;
+					}
+					double reduced = cost(utilities, row - 1, j - 1, objectives)
+							- rowPotentials[row] - columnPotentials[j];
+					if (reduced < minima[j]) {
+						minima[j] = reduced;
+						ways[j] = column;
+					}
+					if (minima[j] < delta) {
+						delta = minima[j];
+						next = j;
+					}
+				}
+				for (int j = 0; j <= columns; j++) {
+					if (used[j]) {
+						rowPotentials[matches[j]] += delta;
+						columnPotentials[j] -= delta;
+					} else {
+						minima[j] -= delta;
+					}
+				}
+				column = next;
+			} while (matches[column] != 0);
+			// Flip the augmenting path
+			do {
+				int previous = ways[column];
+				matches[column] = matches[previous];
+				column = previous;
+			} while (column != 0);
+		}
+	}
+
+	private static double cost(double[][] utilities, int row, int column,
+			int objectives) {
+		if (column >= objectives || utilities[row] == null) {
+			return 0;
+		}
+		return -Math.max(utilities[row][column], 0);
+	}
+}
@@ -0,0 +1,86 @@
+import java.util.Arrays;
+
+/**
+ * Per-turn bitboards of the tiles occupied by living enemies, by friendly
+ * units that have not committed a move yet, and by the destinations friendly
+ * units have committed to this turn. All queries are O(1).
+ */
+final class OccupancyGrid {
+
+	private final GameMap map;
+	private final long[] enemies;
+	private final long[] friendlies;
+	private final long[] reserved;
+
+	OccupancyGrid(GameMap map) {
+		this.map = map;
+		int words = (map.size + 63) >>> 6;
+		this.enemies = new long[words];
+		this.friendlies = new long[words];
+		this.reserved = new long[words];
+	}
+
+	/**
+	 * Rebuild the bitboards from the unit positions at the start of a turn.
+	 * Dead units do not occupy their tiles.
+	 */
+	void update(GameView.Enemy[] enemyUnits,
+			GameView.Friendly[] friendlyUnits) {
+		reset();
+		for (GameView.Enemy enemyUnit : enemyUnits) {
+			if (enemyUnit.getHealth() > 0) {
+				set(enemies, map.index(enemyUnit.getPosition()));
+			}
+		}
+		for (GameView.Friendly friendlyUnit : friendlyUnits) {
+			if (friendlyUnit.getHealth() > 0) {
+				set(friendlies, map.index(friendlyUnit.getPosition()));
+			}
+		}
+	}
+
+	/**
+	 * Mark every tile as free.
+	 */
+	void reset() {
+		Arrays.fill(enemies, 0L);
+		Arrays.fill(friendlies, 0L);
+		Arrays.fill(reserved, 0L);
+	}
+
+	/**
+	 * Record that a friendly unit has committed to moving from one tile to
+	 * another this turn.
+	 */
+	void commitMove(int from, int to) {
+		unset(friendlies, from);
+		set(reserved, to);
+	}
+
+	/**
+	 * @return True if a living enemy stands on the tile.
+	 */
+	boolean hasEnemy(int tile) {
+		return test(enemies, tile);
+	}
+
+	/**
+	 * @return True if the tile is held by a friendly unit that is not moving
+	 *         or has been claimed as a destination by one that is.
+	 */
+	boolean isBlockedForFriendly(int tile) {
+		return test(friendlies, tile) || test(reserved, tile);
+	}
+
+	private static void set(long[] board, int tile) {
+		board[tile >>> 6] |= 1L << tile;
+	}
+
+	private static void unset(long[] board, int tile) {
+		board[tile >>> 6] &= ~(1L << tile);
+	}
+
+	private static boolean test(long[] board, int tile) {
+		return (board[tile >>> 6] & (1L << tile)) != 0;
+	}
+}
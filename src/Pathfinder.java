@@ -0,0 +1,354 @@
+import java.util.Arrays;
+
+/**
+ * Shortest paths over the static map that, unlike World.getPathLength, know
+ * about the units standing on it. A tile with a unit on it is a temporary
+ * obstacle: walking through it costs obstaclePenalty extra moves, so routes
+ * around a blocked corridor win when they exist, but a unit that is boxed in
+ * still gets a path because the blocking units will move eventually. Goal
+ * tiles never cost extra, so a unit standing on a control point doesn't make
+ * it unreachable.
+ * <p>
+ * Searches run backwards from the goal with A*. The heuristic is the
+ * Chebyshev distance to the first source less the furthest any other source
+ * is from it, which never overestimates because every move costs at least 1
+ * and covers at most one row and one column. Jump point search would skip more tiles on open
+ * maps but needs uniform move costs, which the obstacle penalty breaks.
+ * <p>
+ * Every buffer is allocated once per map and reused across queries. Stamps
+ * tell which entries belong to the current search, so nothing has to be
+ * cleared between searches.
+ * <p>
+ * The distances for one unit are asked for in batches: beginSources() takes
+ * the tile a unit stands on and the tiles it can move to, and distance()
+ * then runs one search per goal that settles all of those sources at once,
+ * caching the result until the next beginSources().
+ */
+final class Pathfinder {
+
+	static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private final GameMap map;
+	private final int obstaclePenalty;
+
+	// The number of units standing on each tile
+	private final int[] obstacles;
+
+	// Search state: the cost from each tile to the goal, the next tile on the
+	// way there, and whether the cost is final, valid when stamp[t] == search
+	private final int[] costs;
+	private final int[] next;
+	private final boolean[] closed;
+	private final int[] stamps;
+	private final int[] targetStamps;
+	private int search;
+	// The targets of the current search all lie within radius moves of
+	// (centreX, centreY)
+	private int centreX;
+	private int centreY;
+	private int radius;
+	// The number of moves from the first target to each tile ignoring units,
+	// if known, which makes a tighter heuristic than the Chebyshev distance
+	private int[] centreDistances;
+	// The same for the sources of the current batch
+	private int[] sourceDistances;
+
+	// Binary heap of open tiles ordered by cost + heuristic, then by highest
+	// cost, so that among equally promising tiles the search keeps going
+	// deeper instead of spreading out over open ground
+	private final int[] heap;
+	private final long[] heapKeys;
+	private final int[] heapSlots;
+	private int heapSize;
+
+	// The sources of the current batch, and the slot of each source tile,
+	// valid when sourceStamps[t] == batch
+	private int[] sources = new int[0];
+	private int sourceCount;
+	private final int[] sourceSlots;
+	private final int[] sourceStamps;
+	private int batch;
+	private final int[] pathSource = new int[1];
+
+	// The distances from every source to each goal searched in this batch:
+	// goalRows[g] * sourceCount is where goal g's distances start in
+	// batchDistances, valid when goalStamps[g] == batch
+	private final int[] goalRows;
+	private final int[] goalStamps;
+	private int[] batchDistances = new int[0];
+	private int goalCount;
+
+	Pathfinder(GameMap map, int obstaclePenalty) {
+		this.map = map;
+		this.obstaclePenalty = obstaclePenalty;
+		this.obstacles = new int[map.size];
+		this.costs = new int[map.size];
+		this.next = new int[map.size];
+		this.closed = new boolean[map.size];
+		this.stamps = new int[map.size];
+		this.targetStamps = new int[map.size];
+		this.heap = new int[map.size];
+		this.heapKeys = new long[map.size];
+		this.heapSlots = new int[map.size];
+		this.sourceSlots = new int[map.size];
+		this.sourceStamps = new int[map.size];
+		this.goalRows = new int[map.size];
+		this.goalStamps = new int[map.size];
+	}
+
+	/**
+	 * Forget every obstacle, at the start of a turn.
+	 */
+	void clearObstacles() {
+		Arrays.fill(obstacles, 0);
+	}
+
+	/**
+	 * Mark a tile as having a unit on it.
+	 */
+	void addObstacle(int tile) {
+		obstacles[tile]++;
+	}
+
+	/**
+	 * Take a unit off a tile.
+	 */
+	void removeObstacle(int tile) {
+		obstacles[tile]--;
+	}
+
+	/**
+	 * Start a batch of distance queries from the given tiles. Must be called
+	 * again after the obstacles change.
+	 *
+	 * @param tiles
+	 *            The source tiles, none of them walls: a search only stops
+	 *            early once it has settled every source. Only the first count
+	 *            are used.
+	 * @param count
+	 *            The number of sources.
+	 */
+	void beginSources(int[] tiles, int count) {
+		beginSources(tiles, count, null);
+	}
+
+	/**
+	 * Start a batch of distance queries from the given tiles, guided by the
+	 * number of moves from the first of them to every tile.
+	 *
+	 * @param tiles
+	 *            The source tiles. Only the first count are used.
+	 * @param count
+	 *            The number of sources.
+	 * @param distances
+	 *            The result of GameMap.distances() from tiles[0], or null.
+	 */
+	void beginSources(int[] tiles, int count, int[] distances) {
+		sourceDistances = distances;
+		if (sources.length < count) {
+			sources = new int[count];
+		}
+		batch++;
+		sourceCount = 0;
+		for (int s = 0; s < count; s++) {
+			if (sourceStamps[tiles[s]] != batch) {
+				sourceStamps[tiles[s]] = batch;
+				sourceSlots[tiles[s]] = sourceCount;
+				sources[sourceCount++] = tiles[s];
+			}
+		}
+		goalCount = 0;
+	}
+
+	/**
+	 * @param from
+	 *            One of the tiles given to the last beginSources().
+	 * @param goal
+	 *            Any tile.
+	 * @return The cost of the cheapest path from the source to the goal, or
+	 *         UNREACHABLE.
+	 */
+	int distance(int from, int goal) {
+		if (sourceStamps[from] != batch) {
+			throw new IllegalArgumentException("Tile " + from
+					+ " is not a source of this batch");
+		}
+		if (goalStamps[goal] != batch) {
+			goalStamps[goal] = batch;
+			goalRows[goal] = goalCount;
+			int row = goalCount++ * sourceCount;
+			if (batchDistances.length < row + sourceCount) {
+				batchDistances = Arrays.copyOf(batchDistances,
+						Math.max(2 * batchDistances.length, row + sourceCount));
+			}
+			searchFrom(goal, sources, sourceCount, sourceDistances);
+			for (int s = 0; s < sourceCount; s++) {
+				batchDistances[row + s] = settledCost(sources[s]);
+			}
+		}
+		return batchDistances[goalRows[goal] * sourceCount
+				+ sourceSlots[from]];
+	}
+
+	/**
+	 * Find the cheapest path between two tiles.
+	 *
+	 * @param from
+	 *            The tile to start from. It is not part of the path.
+	 * @param goal
+	 *            The tile to reach.
+	 * @param path
+	 *            Filled with the tiles along the path, ending with the goal if
+	 *            it fits.
+	 * @param offset
+	 *            Where in path to write the first tile.
+	 * @return The number of tiles written to path, 0 if the goal can't be
+	 *         reached or from is the goal.
+	 */
+	int path(int from, int goal, int[] path, int offset) {
+		pathSource[0] = from;
+		searchFrom(goal, pathSource, 1, null);
+		if (settledCost(from) == UNREACHABLE) {
+			return 0;
+		}
+		int end = offset;
+		for (int tile = from; tile != goal && end < path.length;) {
+			tile = next[tile];
+			path[end++] = tile;
+		}
+		return end - offset;
+	}
+
+	private int settledCost(int tile) {
+		return stamps[tile] == search && closed[tile] ? costs[tile]
+				: UNREACHABLE;
+	}
+
+	/**
+	 * A* from the goal until every target tile is settled or nothing is left
+	 * to expand.
+	 */
+	private void searchFrom(int goal, int[] targets, int targetCount,
+			int[] distances) {
+		search++;
+		centreDistances = distances;
+		heapSize = 0;
+		int remaining = 0;
+		centreX = targets[0] % map.width;
+		centreY = targets[0] / map.width;
+		radius = 0;
+		for (int s = 0; s < targetCount; s++) {
+			// Count each target tile once
+			if (stamps[targets[s]] != search) {
+				stamps[targets[s]] = search;
+				closed[targets[s]] = false;
+				costs[targets[s]] = UNREACHABLE;
+				targetStamps[targets[s]] = search;
+				remaining++;
+				radius = Math.max(radius, chebyshev(targets[s]));
+			}
+		}
+		if (distances != null && distances[goal] == UNREACHABLE) {
+			// No target can reach the goal
+			return;
+		}
+		open(goal, 0, goal);
+		while (heapSize > 0 && remaining > 0) {
+			int tile = pop();
+			closed[tile] = true;
+			if (targetStamps[tile] == search) {
+				remaining--;
+			}
+			// Reaching tile from a neighbour means walking onto tile
+			int step = 1 + (tile != goal && obstacles[tile] > 0 ? obstaclePenalty
+					: 0);
+			int cost = costs[tile] + step;
+			for (int neighbour : map.neighbours(tile)) {
+				if (stamps[neighbour] != search) {
+					stamps[neighbour] = search;
+					closed[neighbour] = false;
+					costs[neighbour] = UNREACHABLE;
+				}
+				if (distances != null && distances[neighbour] == UNREACHABLE) {
+					// Walls cut this tile off from every target
+					continue;
+				}
+				if (!closed[neighbour] && cost < costs[neighbour]) {
+					open(neighbour, cost, tile);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The Chebyshev distance from the tile to the first target.
+	 */
+	private int chebyshev(int tile) {
+		return Math.max(Math.abs(tile % map.width - centreX),
+				Math.abs(tile / map.width - centreY));
+	}
+
+	/**
+	 * Add a tile to the open heap, or lower its cost if it is already there.
+	 */
+	private void open(int tile, int cost, int towards) {
+		boolean queued = stamps[tile] == search && costs[tile] != UNREACHABLE;
+		stamps[tile] = search;
+		costs[tile] = cost;
+		next[tile] = towards;
+		// No target is closer than this
+		int heuristic = Math.max(chebyshev(tile) - radius, 0);
+		if (centreDistances != null) {
+			heuristic = Math.max(heuristic, centreDistances[tile] - radius);
+		}
+		long key = ((long) (cost + heuristic) << 32) - cost;
+		int slot;
+		if (queued) {
+			slot = heapSlots[tile];
+		} else {
+			slot = heapSize++;
+		}
+		// Sift up; keys only ever decrease
+		while (slot > 0) {
+			int parent = (slot - 1) >> 1;
+			if (heapKeys[parent] <= key) {
+				break;
+			}
+			place(slot, heap[parent], heapKeys[parent]);
+			slot = parent;
+		}
+		place(slot, tile, key);
+	}
+
+	private int pop() {
+		int top = heap[0];
+		int tile = heap[--heapSize];
+		long key = heapKeys[heapSize];
+		int slot = 0;
+		// Sift down
+		while (true) {
+			int child = 2 * slot + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+				child++;
+			}
+			if (heapKeys[child] >= key) {
+				break;
+			}
+			place(slot, heap[child], heapKeys[child]);
+			slot = child;
+		}
+		if (heapSize > 0) {
+			place(slot, tile, key);
+		}
+		return top;
+	}
+
+	private void place(int slot, int tile, long key) {
+		heap[slot] = tile;
+		heapKeys[slot] = key;
+		heapSlots[tile] = slot;
+	}
+}
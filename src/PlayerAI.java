@@ -1,949 +1,1993 @@
-import java.util.Arrays;
-
-import com.orbischallenge.ctz.Constants;
-import com.orbischallenge.ctz.objects.ControlPoint;
-import com.orbischallenge.ctz.objects.EnemyUnit;
-import com.orbischallenge.ctz.objects.FriendlyUnit;
-import com.orbischallenge.ctz.objects.Pickup;
-import com.orbischallenge.ctz.objects.World;
-import com.orbischallenge.ctz.objects.ControlPoint;
-import com.orbischallenge.ctz.objects.enums.ActivateShieldResult;
-import com.orbischallenge.ctz.objects.enums.ShotResult;
-import com.orbischallenge.ctz.objects.enums.Direction;
-import com.orbischallenge.ctz.objects.enums.PickupType;
-import com.orbischallenge.ctz.objects.enums.PickupResult;
-import com.orbischallenge.ctz.objects.enums.MoveResult;
-import com.orbischallenge.ctz.objects.enums.Team;
-import com.orbischallenge.ctz.objects.enums.WeaponType;
-import com.orbischallenge.game.engine.Point;
-
-public class PlayerAI {
-
-	private static final int NUM_UNITS = 4;
-	private static final int CP_DEFEND_SHOOT_MULTIPLIER = 7;
-	private static final int CP_DEFEND_ENEMY_PROXIMITY = 3;
-	private static final int CP_DEFEND_POINTS_PER_MOVE_MULTIPLIER = 100;
-	private static final float MAINFRAME_DAMAGE_MULTIPLIER = 2f;
-	private static final float MAINFRAME_DEFENSE_MULTIPLIER = 2f;
-
-	private static final int POINTS_PER_DAMAGE = 10;
-	private static final int REPAIR_KIT_HEALTH_AMOUNT = 20;
-	private static final float MOVE_DISTANCE_EXPONENT = 1.5f;
-	private static final float MOVE_DISTANCE_MAINFRAME_EXPONENT = 1.25f;
-	private static final int ENEMY_KILL_POINTS = 100;
-	private static final int NEUTRALIZE_CONTROL_POINT_POINTS = 775;
-	private static final int CAPTURE_CONTROL_POINT_POINTS = 400;
-	private static final int PICKUP_POINTS = 50;
-	private static final int POINTS_FOR_HELPING_OUT_FRIENDLY = 250;
-
-	private static final int NO_MAINFRAME_MAX_TEAM_DISTANCE = 5;
-	private static final int NO_MAINFRAME_GROUPING_POINTS = 250;
-
-	private static final float MOVE_MULTIPLIER = 1.0f;
-	private static final float SHOOT_MULTIPLIER = 1.0f;
-	private static final float SHIELD_MULTIPLIER = 1.0f;
-	private static final float PICKUP_MULTIPLIER = 3.0f;
-
-	// The latest state of the world.
-	private World world;
-	// An array of all 4 units on the enemy team. Their order won't change.
-	private EnemyUnit[] enemyUnits;
-	// An array of all 4 units on your team. Their order won't change.
-	private FriendlyUnit[] friendlyUnits;
-	// An array of enemy units to shoot
-	private EnemyUnit[] enemiesToShoot = new EnemyUnit[4];
-
-	// Stores the best direction for each friendlyUnit to travel in
-	private Direction[] bestMoveDirections = new Direction[NUM_UNITS];
-
-	// Stores the move actions that have been determined for the current turn
-	// for each friendlyUnit
-	private Point[] currentMoveActions = new Point[NUM_UNITS];
-
-	// Stores the move actions that were determined for the previous turn
-	// for each friendlyUnit
-	private Point[] previousMoveActions = new Point[NUM_UNITS];
-
-	// Stores the results of the previous move attempts. The difference between
-	// this array and FriendlyUnit.getLastMoveResult() is that this array will
-	// not have MoveResult.NO_MOVE_ATTEMPTED if the previous action was not a
-	// move. Initially, it is filled with MoveResult.MOVE_COMPLETED
-	private MoveResult[] previousMoveResults = new MoveResult[NUM_UNITS];
-
-	public PlayerAI() {
-		Arrays.fill(previousMoveResults, MoveResult.MOVE_COMPLETED);
-	}
-
-	/**
-	 * Determine whether a friendlyUnit can make a move action.
-	 * 
-	 * @param i
-	 *            The index of the friendlyUnit we are interested in.
-	 * @return True if the friendlyUnit can make a move action, false otherwise.
-	 */
-	private boolean canMove(int i) {
-		// Check each direction to determine if the unit can move in that
-		// direction
-		for (Direction d : Direction.values()) {
-			if (moveValid(i, d)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	/**
-	 * Determine whether given point is a part of a control point
-	 * 
-	 * @param p
-	 *            Point we are interested in.
-	 * @return True if given point is a part of CP, false otherwise.
-	 */
-	private boolean isOnCP(Point p) {
-		// Check all control points, and check if we are within 1 block away
-		ControlPoint[] controlPoints = world.getControlPoints();
-
-		for (ControlPoint cp : controlPoints) {
-			// Only consider this cp if the current direction decreases
-			// the path length by 1
-			if (world.getPathLength(p, cp.getPosition()) < 2)
-				return true;
-		}
-		return false;
-	}
-
-	/**
-	 * Determine whether a friendlyUnit can make a shoot action.
-	 * 
-	 * @param i
-	 *            The index of the friendlyUnit we are interested in.
-	 * @return True if the friendlyUnit can make a shoot action, false
-	 *         otherwise.
-	 */
-	private boolean canShoot(int i) {
-		for (int j = 0; j < enemyUnits.length; j++) {
-			if (friendlyUnits[i].checkShotAgainstEnemy(enemyUnits[j]) == ShotResult.CAN_HIT_ENEMY) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	/**
-	 * Determine whether a friendlyUnit can make a shield action.
-	 * 
-	 * @param i
-	 *            The index of the friendlyUnit we are interested in.
-	 * @return True if the friendlyUnit can make a shield action, false
-	 *         otherwise.
-	 */
-	private boolean canShield(int i) {
-		return friendlyUnits[i].checkShieldActivation() == ActivateShieldResult.SHIELD_ACTIVATION_VALID;
-	}
-
-	/**
-	 * Determine whether a friendlyUnit can make a pickup action.
-	 * 
-	 * @param i
-	 *            The index of the friendlyUnit we are interested in.
-	 * @return True if the friendlyUnit can make a pickup action, false
-	 *         otherwise.
-	 */
-	private boolean canPickup(int i) {
-		return friendlyUnits[i].checkPickupResult() == PickupResult.PICK_UP_VALID;
-	}
-
-	/**
-	 * Determine number of control points controlled by a team.
-	 * 
-	 * @param team
-	 *            Team we are interested in.
-	 * @return number of control points controlled by the team
-	 */
-	private int numberOfControlPointsControlled(Team team) {
-		ControlPoint[] controlPoints = world.getControlPoints();
-		int counter = 0;
-		for (int i = 0; i < controlPoints.length; i++) {
-			if (controlPoints[i].getControllingTeam() == team) {
-				counter++;
-			}
-		}
-		return counter;
-	}
-
-	/**
-	 * Determine number of mainframes controlled by a team.
-	 * 
-	 * @param team
-	 *            Team we are interested in.
-	 * @return number of mainframes controlled by the team
-	 */
-	private int numberOfMainframesControlled(Team team) {
-		ControlPoint[] controlPoints = world.getControlPoints();
-		int counter = 0;
-		for (int i = 0; i < controlPoints.length; i++) {
-			if (controlPoints[i].isMainframe()
-					&& controlPoints[i].getControllingTeam() == team) {
-				counter++;
-			}
-		}
-		return counter;
-	}
-
-	/**
-	 * Determines if movement for a unit in a direction is valid. This considers
-	 * whether the previous move attempt succeeded (only if it was to the same
-	 * tile we are trying to move to now), whether there is an enemy there, and
-	 * guarantees that we won't move two units to the same location or move a
-	 * unit to a location that another unit won't move out of this turn.
-	 * 
-	 * @param i
-	 *            The index of the friendlyUnit we are interested in.
-	 * @param d
-	 *            The direction we are thinking of moving that unit in.
-	 * @return Whether or not we are allowed to move the unit in that direction.
-	 */
-	private boolean moveValid(int i, Direction d) {
-		Point movePosition = d.movePoint(friendlyUnits[i].getPosition());
-
-		// If our last move failed and it was to the same tile we are currently
-		// thinking about moving to
-		if (previousMoveResults[i] != MoveResult.MOVE_COMPLETED
-				&& movePosition.equals(previousMoveActions[i])) {
-			return false;
-		}
-
-		// Moves onto enemy tiles are not valid
-		for (EnemyUnit enemyUnit : enemyUnits) {
-			// Only prevent moving on enemy if they are alive
-			if (movePosition.equals(enemyUnit.getPosition())
-					&& enemyUnit.getHealth() > 0) {
-				return false;
-			}
-		}
-
-		// For each friendly unit
-		for (int j = 0; j < NUM_UNITS; j++) {
-			// If this friendly unit is dead, we can move to its position
-			if (friendlyUnits[j].getHealth() <= 0) {
-				continue;
-			}
-			if (currentMoveActions[j] != null
-					&& currentMoveActions[j].equals(movePosition)) {
-				// If the current unit moving in the specified direction is the
-				// same position that a unit is already planning to move to,
-				// then the direction is invalid
-				return false;
-			} else if (currentMoveActions[j] == null
-					&& friendlyUnits[j].getPosition().equals(movePosition)) {
-				// If the current unit is trying to move onto a location
-				// occupied by a friendly unit that doesn't plan to move,
-				// then the direction is invalid
-				return false;
-			}
-		}
-		return friendlyUnits[i].checkMove(d) == MoveResult.MOVE_VALID;
-	}
-
-	/**
-	 * Returns the difference in path lengths between a and target and b and
-	 * target.
-	 * 
-	 * @param a
-	 *            The starting Point for the first path to target.
-	 * @param b
-	 *            The starting Point for the second path to target.
-	 * @param target
-	 *            The target Point.
-	 * @return (the path length of a -> target) - (the path length of b ->
-	 *         target)
-	 */
-	private int getDifferenceInPathLengths(Point a, Point b, Point target) {
-		return world.getPathLength(a, target) - world.getPathLength(b, target);
-	}
-
-	/**
-	 * Determine the maximum number of points we can get if we were to perform a
-	 * move action for a specific friendlyUnit.
-	 * 
-	 * @param i
-	 *            The index of the friendlyUnit we are interested in.
-	 * @return An estimate of the number of points for the best move action we
-	 *         can take.
-	 */
-	private int pointsForMove(int i) {
-		int maxPoints = Integer.MIN_VALUE;
-		Direction bestDirection = null;
-
-		// For each direction
-		for (Direction d : Direction.values()) {
-			// If we can actually travel in that direction
-			if (moveValid(i, d)) {
-				int pointsForDirection = 0;
-				Point directionPoint = d.movePoint(friendlyUnits[i]
-						.getPosition());
-
-				ControlPoint[] controlPoints = world.getControlPoints();
-				Pickup[] pickups = world.getPickups();
-				float distanceExponent = MOVE_DISTANCE_EXPONENT;
-
-				for (ControlPoint cp : controlPoints) {
-					// Only consider this cp if the current direction decreases
-					// the path length by 1
-					if (getDifferenceInPathLengths(
-							friendlyUnits[i].getPosition(), directionPoint,
-							cp.getPosition()) != 1) {
-						continue;
-					}
-					int cpPoints;
-					if (cp.getControllingTeam() == friendlyUnits[i].getTeam()) {
-						cpPoints = 0;
-						// defend the point if there are enemies around
-						for (int j = 0; j < enemyUnits.length; j++) {
-							// ignore dead units
-							if (enemyUnits[j].getHealth() <= 0)
-								continue;
-							int pathLengthFromEnemy = world.getPathLength(
-									enemyUnits[j].getPosition(),
-									cp.getPosition());
-							if (pathLengthFromEnemy <= CP_DEFEND_ENEMY_PROXIMITY) {
-								if (pathLengthFromEnemy == 0)
-									pathLengthFromEnemy = 1;
-								cpPoints += (CP_DEFEND_ENEMY_PROXIMITY - pathLengthFromEnemy)
-										* CP_DEFEND_POINTS_PER_MOVE_MULTIPLIER;
-							}
-						}
-					} else if (cp.getControllingTeam() == Team
-							.opposite(friendlyUnits[i].getTeam())) {
-						// NEUTRALIZE_CONTROL_POINT_POINTS extra points for
-						// neutralizing an opposing control
-						// point
-						cpPoints = NEUTRALIZE_CONTROL_POINT_POINTS;
-
-						if (cp.isMainframe()) {
-							// add 400 extra points for mainframe
-							cpPoints += 400;
-							distanceExponent = MOVE_DISTANCE_MAINFRAME_EXPONENT;
-							// if we have no mainframes, but enemy does
-							if (numberOfMainframesControlled(friendlyUnits[i]
-									.getTeam()) == 0
-									&& numberOfMainframesControlled(enemyUnits[i]
-											.getTeam()) > 0) {
-								// rush for mainframe!!!
-								distanceExponent = 1;
-							}
-						} else {
-							// Don't go to enemy cp that are guarded
-							for (int j = 0; j < enemyUnits.length; j++) {
-								// ignore dead enemies
-								if (enemyUnits[j].getHealth() == 0)
-									continue;
-								int pathLengthFromEnemy = world.getPathLength(
-										enemyUnits[j].getPosition(),
-										cp.getPosition());
-								if (pathLengthFromEnemy <= 2) {
-									cpPoints = 0;
-									break;
-								}
-							}
-						}
-					} else {
-						cpPoints = CAPTURE_CONTROL_POINT_POINTS;
-					}
-					int distanceToCP = world.getPathLength(directionPoint,
-							cp.getPosition());
-					// any point within 1 radius counts as CP point
-					if (distanceToCP == 0)
-						distanceToCP++;
-					// Make the points for this cp drop off with distance
-					// according to x^MOVE_DISTANCE_EXPONENT
-					pointsForDirection += cpPoints
-							/ Math.pow(distanceToCP, distanceExponent);
-				}
-
-				for (Pickup p : pickups) {
-					// Only consider this pickup if the current direction
-					// decreases the path length by 1
-					if (getDifferenceInPathLengths(
-							friendlyUnits[i].getPosition(), directionPoint,
-							p.getPosition()) != 1) {
-						continue;
-					}
-					int pickupPoints = valueOfPickup(i, p.getPickupType());
-					// if there is a pickup at where we are right now
-					// and it's value is greater than potential pickup
-					// ignore potential pickup
-					if (friendlyUnits[i].checkPickupResult() == PickupResult.PICK_UP_VALID) {
-						int currentPickupPoints = pointsForPickup(i);
-						if (currentPickupPoints >= pickupPoints)
-							continue;
-					}
-					// Make the points for this pickup drop off with distance
-					// according to x^MOVE_DISTANCE_EXPONENT
-					pointsForDirection += pickupPoints
-							/ Math.pow(
-									world.getPathLength(directionPoint,
-											p.getPosition()) + 1,
-									MOVE_DISTANCE_EXPONENT);
-
-				}
-
-				for (int j = 0; j < NUM_UNITS; j++) {
-					int pointsForEnemy = 0;
-					int closestEnemy = Integer.MAX_VALUE;
-					Point lastUnitLocation = friendlyUnits[j].getPosition();
-					// skip yourself
-					if (j == i)
-						continue;
-					if (friendlyUnits[j].getDamageTakenLastTurn() > 0) {
-						// if a friendly took damage last turn
-						// get an array of enemies that attacked that friendly
-						EnemyUnit enemyUnitsWhoAttacked[] = friendlyUnits[j]
-								.getEnemiesWhoShotMeLastTurn();
-						// if enemies that shot friendly are within 5 range, go
-						// towards them
-						for (int k = 0; k < enemyUnitsWhoAttacked.length; k++) {
-							if (world.getPathLength(
-									friendlyUnits[i].getPosition(),
-									enemyUnitsWhoAttacked[k].getPosition()) < 6
-									&& world.getPathLength(friendlyUnits[i]
-											.getPosition(),
-											enemyUnitsWhoAttacked[k]
-													.getPosition()) < closestEnemy) {
-								// Only consider going there if the current
-								// direction
-								// decreases the path length by 1
-								if (getDifferenceInPathLengths(
-										friendlyUnits[i].getPosition(),
-										directionPoint,
-										enemyUnitsWhoAttacked[k].getPosition()) != 1) {
-									continue;
-								} else {
-									pointsForEnemy = POINTS_FOR_HELPING_OUT_FRIENDLY;
-									lastUnitLocation = enemyUnitsWhoAttacked[k]
-											.getPosition();
-									closestEnemy = world.getPathLength(
-											friendlyUnits[i].getPosition(),
-											enemyUnitsWhoAttacked[k]
-													.getPosition());
-								}
-
-							}
-						}
-					} else {
-						continue;
-					}
-
-					// Move to help out friendly unit. We are not using
-					// exponential here
-					// There is no point in getting real close, so anything
-					// closer than 3 units is same rate
-					int distanceToEnemy = world.getPathLength(directionPoint,
-							lastUnitLocation);
-					if (distanceToEnemy < 3)
-						distanceToEnemy = 3;
-					pointsForDirection += pointsForEnemy / distanceToEnemy;
-
-				}
-
-				int potentialDamageTakenByStaying = maximumPotentialDamageTaken(friendlyUnits[i]
-						.getPosition());
-				int damageTakenByStayingPoints = potentialDamageTakenByStaying
-						* POINTS_PER_DAMAGE;
-
-				if (friendlyUnits[i].getHealth() <= potentialDamageTakenByStaying) {
-					damageTakenByStayingPoints += ENEMY_KILL_POINTS;
-				}
-
-				// Calculate the damage and points received by the enemy for
-				// damaging us in the new position
-				int potentialDamageTakenByMoving = maximumPotentialDamageTaken(directionPoint);
-				int damageTakenByMovingPoints = potentialDamageTakenByMoving
-						* POINTS_PER_DAMAGE;
-
-				// If the hit will kill us then factor in the enemy gaining
-				// ENEMY_KILL_POINTS
-				if (friendlyUnits[i].getHealth() <= potentialDamageTakenByMoving) {
-					damageTakenByMovingPoints += ENEMY_KILL_POINTS;
-				}
-
-				// Use the difference in damage between moving to the new
-				// position and staying in the current position
-				pointsForDirection -= damageTakenByMovingPoints
-						- damageTakenByStayingPoints;
-				pointsForDirection += maximumPotentialDamageDealtPoints(i,
-						directionPoint)
-						- maximumPotentialDamageDealtPoints(i,
-								friendlyUnits[i].getPosition());
-
-				// If no one has mainframes
-				if (numberOfMainframesControlled(friendlyUnits[i].getTeam()) == 0
-						&& numberOfMainframesControlled(enemyUnits[i].getTeam()) == 0) {
-					// Try to gather as a group to stay alive
-					for (int j = 0; j < NUM_UNITS; j++) {
-						// If moving in this direction will take us to another
-						// friendlyUnit
-						if (i != j
-								&& d.equals(world.getNextDirectionInPath(
-										friendlyUnits[i].getPosition(),
-										friendlyUnits[j].getPosition()))) {
-							// Only move towards other friendlyUnits if the
-							// distance is larger than
-							// NO_MAINFRAME_MAX_TEAM_DISTANCE
-							int pathLength = world.getPathLength(
-									friendlyUnits[i].getPosition(),
-									friendlyUnits[j].getPosition());
-							if (pathLength > NO_MAINFRAME_MAX_TEAM_DISTANCE) {
-								pointsForDirection += NO_MAINFRAME_GROUPING_POINTS
-										/ (pathLength + 1);
-							}
-						}
-					}
-				}
-
-				// Choose the direction that maximizes our points
-				if (pointsForDirection > maxPoints) {
-					maxPoints = pointsForDirection;
-					bestDirection = d;
-				}
-			}
-		}
-
-		bestMoveDirections[i] = bestDirection;
-
-		return maxPoints;
-	}
-
-	/**
-	 * Determine the maximum number of points we can get if we were to perform a
-	 * shoot action for a specific friendlyUnit.
-	 * 
-	 * @param i
-	 *            The index of the friendlyUnit we are interested in.
-	 * @return An estimate of the number of points for the best shot we can
-	 *         make.
-	 */
-	private int pointsForShoot(int i) {
-		// for each enemy, check what happens if all friendly units try to shot
-		// him
-		int maxPoints = Integer.MIN_VALUE;
-		int minEnemyHP = Integer.MAX_VALUE;
-		for (int j = 0; j < enemyUnits.length; j++) {
-			// If shooting the current enemy isn't valid, skip it
-			if (friendlyUnits[i].checkShotAgainstEnemy(enemyUnits[j]) != ShotResult.CAN_HIT_ENEMY) {
-				continue;
-			}
-			int totalDamage = 0;
-			int damageMultiplier = 0;
-			// Calculate the total amount of damage we can do to this enemy with
-			// all units
-			for (int k = 0; k < friendlyUnits.length; k++) {
-				if (friendlyUnits[k].checkShotAgainstEnemy(enemyUnits[j]) == ShotResult.CAN_HIT_ENEMY) {
-					totalDamage += friendlyUnits[k].getCurrentWeapon()
-							.getDamage();
-					damageMultiplier++;
-				}
-			}
-			int damage = totalDamage * damageMultiplier;
-			int points = damage * POINTS_PER_DAMAGE;
-			// if we kill the enemy, add ENEMY_KILL_POINTS points
-			if (enemyUnits[j].getHealth() <= damage) {
-				points += ENEMY_KILL_POINTS;
-			}
-			// If the enemy doesn't have a mainframe and we do, we want to shoot
-			// them more
-			if (numberOfMainframesControlled(enemyUnits[j].getTeam()) == 0
-					&& numberOfMainframesControlled(friendlyUnits[i].getTeam()) > 0) {
-				// TODO: figure out a multiplier in case enemies have no
-				// mainframes,
-				// but we have mainframes
-				points = (int) (points * MAINFRAME_DAMAGE_MULTIPLIER);
-			}
-			// Choose the enemy to shoot that maximizes our points
-			if (points > maxPoints) {
-				maxPoints = points;
-				enemiesToShoot[i] = enemyUnits[j];
-				minEnemyHP = enemyUnits[j].getHealth();
-			} else if (points == maxPoints) {
-				// if we can shoot more than 1 guy
-				if (enemyUnits[j].getHealth() < minEnemyHP) {
-					// we pick guy with least health
-					maxPoints = points;
-					enemiesToShoot[i] = enemyUnits[j];
-					minEnemyHP = enemyUnits[j].getHealth();
-				}
-			}
-		}
-		if (isOnCP(friendlyUnits[i].getPosition()))
-			maxPoints = maxPoints * CP_DEFEND_SHOOT_MULTIPLIER;
-		return maxPoints;
-	}
-
-	/**
-	 * Determine the maximum number of points we can get if we were to perform a
-	 * shield action for a specific friendlyUnit.
-	 * 
-	 * @param i
-	 *            The index of the friendlyUnit we are interested in.
-	 * @return An estimate of the number of points for shielding.
-	 */
-	private int pointsForShield(int i) {
-		// TODO: later on we could implement something to let us live longer if
-		// the other enemy has a mainframe and we do not
-
-		// calculate amount of damage we might take next turn
-		int amountOfDamageTaken = maximumPotentialDamageTaken(friendlyUnits[i]
-				.getPosition());
-		int amountOfPoints = amountOfDamageTaken * POINTS_PER_DAMAGE;
-		if (friendlyUnits[i].getHealth() < amountOfDamageTaken) {
-			// unit will die, and enemy will receive additional
-			// ENEMY_KILL_POINTS points
-			amountOfPoints += ENEMY_KILL_POINTS;
-		}
-		if (numberOfMainframesControlled(enemyUnits[i].getTeam()) > 0
-				&& numberOfMainframesControlled(friendlyUnits[i].getTeam()) == 0) {
-			// if we have no mainframes, but enemy does
-			amountOfPoints = (int) (amountOfPoints * MAINFRAME_DEFENSE_MULTIPLIER);
-		}
-		return amountOfPoints;
-	}
-
-	/**
-	 * Determine the maximum potential damage that enemies can deal to a certain
-	 * point.
-	 * 
-	 * @param p
-	 *            point that we are interested in.
-	 * @return maximum damage that enemies can deal to that location next turn
-	 */
-	private int maximumPotentialDamageTaken(Point p) {
-		int amountOfDamageTaken = 0;
-		int damageMultiplier = 0;
-		for (int j = 0; j < enemyUnits.length; j++) {
-			// get unit's range
-			int range = enemyUnits[j].getCurrentWeapon().getRange();
-			// If the enemy can shoot the target and the enemy is alive
-			if (world.canShooterShootTarget(enemyUnits[j].getPosition(), p,
-					range) && enemyUnits[j].getHealth() > 0) {
-				amountOfDamageTaken += enemyUnits[j].getCurrentWeapon()
-						.getDamage();
-				damageMultiplier++;
-			}
-		}
-		return amountOfDamageTaken * damageMultiplier;
-	}
-
-	/**
-	 * Determine the maximum potential damage that we can deal to enemies if
-	 * friendlyUnit i moves to point p.
-	 * 
-	 * @param i
-	 *            The index of the friendlyUnit we are interested in.
-	 * @param p
-	 *            The point we are interested in.
-	 * @return The maximum damage that we can deal to enemies if friendlyUnit i
-	 *         moves to Point p.
-	 */
-	private int maximumPotentialDamageDealtPoints(int i, Point p) {
-		int maxPoints = 0;
-
-		// For each enemyUnit
-		for (int j = 0; j < NUM_UNITS; j++) {
-			// If shooting the current enemy isn't valid, skip it
-			if (!world.canShooterShootTarget(p, enemyUnits[j].getPosition(),
-					friendlyUnits[i].getCurrentWeapon().getRange())
-					&& enemyUnits[j].getHealth() > 0) {
-				continue;
-			}
-
-			int totalDamage = 0;
-			int damageMultiplier = 0;
-
-			// For each friendlyUnit
-			for (int k = 0; k < NUM_UNITS; k++) {
-				// Determine the position of the friendlyUnit next turn
-				Point nextFriendlyPosition = currentMoveActions[k] != null ? currentMoveActions[k]
-						: friendlyUnits[k].getPosition();
-				// If the current friendlyUnit is the ith friendlyUnit, we need
-				// to consider that it's moving to point p
-				if (i == k) {
-					nextFriendlyPosition = p;
-				}
-
-				// If the friendlyUnit can shoot the target and it's alive
-				if (world.canShooterShootTarget(nextFriendlyPosition,
-						enemyUnits[j].getPosition(), friendlyUnits[k]
-								.getCurrentWeapon().getRange())
-						&& enemyUnits[j].getHealth() > 0) {
-					totalDamage += friendlyUnits[k].getCurrentWeapon()
-							.getDamage();
-					damageMultiplier++;
-				}
-			}
-
-			int damage = totalDamage * damageMultiplier;
-			int points = damage * POINTS_PER_DAMAGE;
-			// if we kill the enemy, add ENEMY_KILL_POINTS points
-			if (enemyUnits[j].getHealth() <= damage) {
-				points += ENEMY_KILL_POINTS;
-			}
-
-			if (points > maxPoints) {
-				maxPoints = points;
-			}
-		}
-		return maxPoints;
-	}
-
-	/**
-	 * Determine the maximum number of points we can get if we were to perform a
-	 * pickup action for a specific friendlyUnit.
-	 * 
-	 * @param i
-	 *            The index of the friendlyUnit we are interested in.
-	 * @return An estimate of the number of points for picking up.
-	 */
-	private int pointsForPickup(int i) {
-		PickupType currentPickupType = world.getPickupAtPosition(
-				friendlyUnits[i].getPosition()).getPickupType();
-
-		int damageWillTake = maximumPotentialDamageTaken(friendlyUnits[i]
-				.getPosition());
-		// if pickup type is a health kit
-		if (currentPickupType == PickupType.REPAIR_KIT) {
-			if (damageWillTake >= REPAIR_KIT_HEALTH_AMOUNT) {
-				// if we will take more than REPAIR_KIT_HEALTH_AMOUNT dmg next
-				// move picking up repair kit will not be beneficial
-				return 0;
-			} else {
-				// net Health Gained * POINTS_PER_DAMAGE points + PICKUP_POINTS
-				// for pickup
-				return (REPAIR_KIT_HEALTH_AMOUNT - damageWillTake)
-						* POINTS_PER_DAMAGE + PICKUP_POINTS;
-			}
-		}
-		if (currentPickupType == PickupType.SHIELD) {
-			if (damageWillTake >= friendlyUnits[i].getHealth()) {
-				// if we will die in next move
-				// picking up shield will not be beneficial
-				// unless we have a mainframe
-				if (numberOfMainframesControlled(friendlyUnits[i].getTeam()) == 0) {
-					return 0;
-				} else {
-					return valueOfPickup(i, currentPickupType);
-				}
-			} else {
-				return valueOfPickup(i, currentPickupType);
-			}
-		}
-		// if it is a gun:
-		return valueOfPickup(i, currentPickupType);
-	}
-
-	private int valueOfPickup(int i, PickupType p) {
-		int value = 0;
-		WeaponType currentWeapon = friendlyUnits[i].getCurrentWeapon();
-		switch (p) {
-		case REPAIR_KIT:
-			value = 250;
-			break;
-		case SHIELD:
-			value = 200;
-			break;
-		case WEAPON_LASER_RIFLE:
-			switch (currentWeapon) {
-			case LASER_RIFLE:
-				value = PICKUP_POINTS;
-				break;
-			case MINI_BLASTER:
-				value = 100;
-				break;
-			case RAIL_GUN:
-				value = 0;
-				break;
-			case SCATTER_GUN:
-				value = 0;
-				break;
-			}
-			break;
-		case WEAPON_MINI_BLASTER:
-			switch (currentWeapon) {
-			case LASER_RIFLE:
-				value = 0;
-				break;
-			case MINI_BLASTER:
-				value = PICKUP_POINTS;
-				break;
-			case RAIL_GUN:
-				value = 0;
-				break;
-			case SCATTER_GUN:
-				value = 0;
-				break;
-			}
-			break;
-		case WEAPON_RAIL_GUN:
-			switch (currentWeapon) {
-			case LASER_RIFLE:
-				value = 200;
-				break;
-			case MINI_BLASTER:
-				value = 200;
-				break;
-			case RAIL_GUN:
-				value = PICKUP_POINTS;
-				break;
-			case SCATTER_GUN:
-				value = 200;
-				break;
-			}
-			break;
-		case WEAPON_SCATTER_GUN:
-			switch (currentWeapon) {
-			case LASER_RIFLE:
-				value = 150;
-				break;
-			case MINI_BLASTER:
-				value = 150;
-				break;
-			case RAIL_GUN:
-				value = 0;
-				break;
-			case SCATTER_GUN:
-				value = PICKUP_POINTS;
-				break;
-			}
-			break;
-		default:
-			value = 0;
-			break;
-
-		}
-		return value;
-	}
-
-	private void performMove(int i) {
-		System.out.println("      Moving to "
-				+ bestMoveDirections[i].movePoint(friendlyUnits[i]
-						.getPosition()));
-		friendlyUnits[i].move(bestMoveDirections[i]);
-		// Store the point that the current unit is planning to move to
-		currentMoveActions[i] = bestMoveDirections[i]
-				.movePoint(friendlyUnits[i].getPosition());
-
-		previousMoveActions[i] = currentMoveActions[i];
-	}
-
-	private void performShoot(int i) {
-		System.out.println("      Shooting at "
-				+ enemiesToShoot[i].getASCIIIcon());
-		friendlyUnits[i].shootAt(enemiesToShoot[i]);
-	}
-
-	private void performShield(int i) {
-		friendlyUnits[i].activateShield();
-	}
-
-	private void performPickup(int i) {
-		friendlyUnits[i].pickupItemAtPosition();
-	}
-
-	/**
-	 * Determine the action that should be taken for the ith friendlyUnit, and
-	 * take that action.
-	 * 
-	 * @param i
-	 *            The index of the friendlyUnit we are interested in.
-	 */
-	private void doMove(int i) {
-		if (friendlyUnits[i].getLastMoveResult() != MoveResult.NO_MOVE_ATTEMPTED) {
-			previousMoveResults[i] = friendlyUnits[i].getLastMoveResult();
-		}
-
-		int movePoints = 0;
-		int shootPoints = 0;
-		int shieldPoints = 0;
-		int pickupPoints = 0;
-
-		boolean canMove = canMove(i);
-		boolean canShoot = canShoot(i);
-		boolean canShield = canShield(i);
-		boolean canPickup = canPickup(i);
-
-		// Use our heuristic functions to estimate the maximum number of points
-		// we can get this turn
-		int maxPoints = Integer.MIN_VALUE;
-		if (canMove) {
-			movePoints = (int) (pointsForMove(i) * MOVE_MULTIPLIER);
-			maxPoints = Math.max(maxPoints, movePoints);
-		}
-		if (canShoot) {
-			shootPoints = (int) (pointsForShoot(i) * SHOOT_MULTIPLIER);
-			maxPoints = Math.max(maxPoints, shootPoints);
-		}
-		if (canShield) {
-			shieldPoints = (int) (pointsForShield(i) * SHIELD_MULTIPLIER);
-			maxPoints = Math.max(maxPoints, shieldPoints);
-		}
-		if (canPickup) {
-			pickupPoints = (int) (pointsForPickup(i) * PICKUP_MULTIPLIER);
-			maxPoints = Math.max(maxPoints, pickupPoints);
-		}
-
-		System.out.println("  Unit " + friendlyUnits[i].getASCIIIcon()
-				+ ": move=" + movePoints + " shoot=" + shootPoints + " shield="
-				+ shieldPoints + " pickup=" + pickupPoints);
-
-		if (canShield && shieldPoints == maxPoints) {
-			System.out.println("    Performing shield");
-			// If we can shield, and doing so would maximize our points
-			performShield(i);
-		} else if (canShoot && shootPoints == maxPoints) {
-			System.out.println("    Performing shoot");
-			// If we can shoot, and doing so would maximize our points
-			performShoot(i);
-		} else if (canPickup && pickupPoints == maxPoints) {
-			System.out.println("    Performing pickup");
-			// If we can pickup, and doing so would maximize our points
-			performPickup(i);
-		} else if (canMove && movePoints == maxPoints) {
-			System.out.println("    Performing move");
-			// If we can move, and doing so would maximize our points
-			performMove(i);
-		} else {
-			System.out.println("    Standing by...");
-			friendlyUnits[i].standby();
-		}
-	}
-
-	int moveNumber = 0;
-
-	/**
-	 * This method will get called every turn.
-	 * 
-	 * @param world
-	 *            The latest state of the world.
-	 * @param enemyUnits
-	 *            An array of all 4 units on the enemy team. Their order won't
-	 *            change.
-	 * @param friendlyUnits
-	 *            An array of all 4 units on your team. Their order won't
-	 *            change.
-	 */
-	public void doMove(World world, EnemyUnit[] enemyUnits,
-			FriendlyUnit[] friendlyUnits) {
-
-		System.out.println("Team: " + friendlyUnits[0].getTeam());
-		System.out.println("Move number: " + moveNumber++);
-
-		this.world = world;
-		this.enemyUnits = enemyUnits;
-		this.friendlyUnits = friendlyUnits;
-
-		Arrays.fill(currentMoveActions, null);
-
-		for (int i = 0; i < friendlyUnits.length; i++) {
-			doMove(i);
-		}
-	}
-}
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import com.orbischallenge.ctz.Constants;
+import com.orbischallenge.ctz.objects.EnemyUnit;
+import com.orbischallenge.ctz.objects.FriendlyUnit;
+import com.orbischallenge.ctz.objects.World;
+import com.orbischallenge.ctz.objects.enums.ActivateShieldResult;
+import com.orbischallenge.ctz.objects.enums.ShotResult;
+import com.orbischallenge.ctz.objects.enums.Direction;
+import com.orbischallenge.ctz.objects.enums.PickupType;
+import com.orbischallenge.ctz.objects.enums.PickupResult;
+import com.orbischallenge.ctz.objects.enums.MoveResult;
+import com.orbischallenge.ctz.objects.enums.Team;
+import com.orbischallenge.ctz.objects.enums.WeaponType;
+import com.orbischallenge.game.engine.Point;
+
+public class PlayerAI {
+
+	private static final int CP_DEFEND_SHOOT_MULTIPLIER = 7;
+	private static final int CP_DEFEND_ENEMY_PROXIMITY = 3;
+	private static final int CP_DEFEND_POINTS_PER_MOVE_MULTIPLIER = 100;
+	// Enemy cps with an enemy this close are guarded
+	private static final int CP_GUARD_DISTANCE = 2;
+	private static final float MAINFRAME_DAMAGE_MULTIPLIER = 2f;
+	private static final float MAINFRAME_DEFENSE_MULTIPLIER = 2f;
+
+	private static final int POINTS_PER_DAMAGE = 10;
+	private static final int REPAIR_KIT_HEALTH_AMOUNT = 20;
+	private static final float MOVE_DISTANCE_EXPONENT = 1.5f;
+	private static final float MOVE_DISTANCE_MAINFRAME_EXPONENT = 1.25f;
+	private static final int ENEMY_KILL_POINTS = 100;
+	private static final int NEUTRALIZE_CONTROL_POINT_POINTS = 775;
+	private static final int CAPTURE_CONTROL_POINT_POINTS = 400;
+	private static final int PICKUP_POINTS = 50;
+	private static final int POINTS_FOR_HELPING_OUT_FRIENDLY = 250;
+
+	private static final int NO_MAINFRAME_MAX_TEAM_DISTANCE = 5;
+	private static final int NO_MAINFRAME_GROUPING_POINTS = 250;
+
+	private static final float MOVE_MULTIPLIER = 1.0f;
+	private static final float SHOOT_MULTIPLIER = 1.0f;
+	private static final float SHIELD_MULTIPLIER = 1.0f;
+	private static final float PICKUP_MULTIPLIER = 3.0f;
+
+	// How many extra moves walking through a tile with a unit on it costs
+	private static final int UNIT_OBSTACLE_PENALTY = 3;
+
+	// How many turns ahead units reserve the tiles on their way to a target
+	private static final int RESERVATION_HORIZON = 3;
+
+	// The transposition table holds 2^TRANSPOSITION_TABLE_BITS decisions
+	private static final int TRANSPOSITION_TABLE_BITS = 16;
+	private static final TranspositionTable.ReplacementPolicy TRANSPOSITION_TABLE_POLICY = TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED;
+	// Health is hashed in buckets of this size. Anything above 1 lets similar
+	// states share decisions at the cost of exactness
+	private static final int HEALTH_BUCKET_SIZE = 1;
+	private static final long ZOBRIST_SEED = 0x2016c7e0L;
+
+	// The longest to play synthetic turns for while the first game is set up,
+	// so the decision pipeline is compiled before turn 0. Run with
+	// -Dctz.warmup=false to measure the first turns without it
+	private static final boolean WARM_UP = Boolean.parseBoolean(System
+			.getProperty("ctz.warmup", "true"));
+	private static final long WARM_UP_NANOS = 300 * 1000000L;
+
+	// Build next turn's territory map, damage field and path heuristics on a
+	// background thread between turns. Run with -Dctz.speculate=false to turn
+	// this off
+	private static final boolean SPECULATE = Boolean.parseBoolean(System
+			.getProperty("ctz.speculate", "true"));
+
+	// The latest state of the world.
+	private GameView world;
+	// An array of all units on the enemy team. Their order won't change.
+	private GameView.Enemy[] enemyUnits;
+	// An array of all units on your team. Their order won't change.
+	private GameView.Friendly[] friendlyUnits;
+	// The teams we and the enemy play for
+	private Team friendlyTeam;
+	private Team enemyTeam;
+	// The number of mainframes each team controls at the start of the turn
+	private int friendlyMainframes;
+	private int enemyMainframes;
+
+	// The arrays below are sized for the teams when the first turn is played
+
+	// An array of enemy units to shoot
+	private GameView.Enemy[] enemiesToShoot;
+
+	// Stores the best direction for each friendlyUnit to travel in
+	private Direction[] bestMoveDirections;
+
+	// Stores the move actions that have been determined for the current turn
+	// for each friendlyUnit
+	private Point[] currentMoveActions;
+
+	// Stores the point each friendlyUnit is heading towards with its best move
+	private Point[] moveTargets;
+
+	// canHitEnemy[k][j] is true if friendlyUnit k can shoot enemyUnit j this
+	// turn. shotDamageOnEnemy[j] and shootersOfEnemy[j] sum up the damage and
+	// the number of friendlyUnits that can
+	private boolean[][] canHitEnemy;
+	private int[] shotDamageOnEnemy;
+	private int[] shootersOfEnemy;
+
+	// The same for the positions friendlyUnits will be at next turn, given the
+	// moves committed so far this turn
+	private boolean[][] plannedHits;
+	private int[] plannedDamageOnEnemy;
+	private int[] plannedShootersOfEnemy;
+
+	// Flat tile indexing for the current map
+	private GameMap map;
+	// Tiles occupied by enemies, by friendlyUnits that are not moving and by
+	// the destinations of friendlyUnits that are, for the current turn
+	private OccupancyGrid occupancy;
+	// Tiles reserved by friendlyUnits for this and the next few turns
+	private ReservationTable reservations;
+	// How fast each team can reach every tile this turn
+	private TerritoryMap territory;
+	// The damage enemies can deal to every tile next turn
+	private DamageField damageField;
+	private final DamageKernel damageKernel = DamageKernel.create();
+	// Path lengths that route around units, and the tiles the unit being
+	// evaluated asks them from: where it stands and where it can move to
+	private Pathfinder pathfinder;
+	private final int[] pathSources = new int[Direction.values().length + 1];
+	// The path reserved for the unit whose move was just committed
+	private final int[] reservedPath = new int[RESERVATION_HORIZON];
+
+	// Decisions cached across turns, keyed by the hash of the state they were
+	// made in
+	private final TranspositionTable transpositions = new TranspositionTable(
+			TRANSPOSITION_TABLE_BITS, TRANSPOSITION_TABLE_POLICY);
+	private ZobristHasher zobrist;
+	// The hash of the world at the start of the current turn
+	private long worldHash;
+	// The hash of the moves committed so far this turn
+	private long committedMovesHash;
+	// Reused to read and write transposition table entries
+	private final TranspositionTable.Entry decision = new TranspositionTable.Entry();
+
+	// The tile each friendlyUnit stands on this turn, or
+	// ReservationTable.FREE if it is dead
+	private int[] unitTiles;
+
+	// The points for the damage the unit being evaluated takes and deals if it
+	// stays where it is. Set by moveUpperBound()
+	private int damageTakenByStayingPoints;
+	private int damageDealtByStayingPoints;
+
+	// The tile of the first step and the path length from the unit being
+	// evaluated to every other friendlyUnit, for grouping up, if groupingUnit
+	// is that unit
+	private int[] groupingSteps;
+	private int[] groupingPathLengths;
+	private int groupingUnit;
+	private final int[] groupingStep = new int[1];
+
+	// What each control point is worth, what each pickup is worth to each
+	// friendlyUnit, the points for picking up what each friendlyUnit stands
+	// on or -1 if it can't, and the damage of the whole team: inputs of the
+	// stages, computed once per turn
+	private int[] cpValues;
+	private int[][] pickupValues;
+	private int[] standingPickupPoints;
+	private int teamDamage;
+	private final EvaluatorPipeline.Input controlPointValuesInput = EvaluatorPipeline.Input
+			.perTurn("controlPointValues", this::findControlPointValues);
+	private final EvaluatorPipeline.Input pickupValuesInput = EvaluatorPipeline.Input
+			.perUnit("pickupValues", this::findPickupValues);
+	private final EvaluatorPipeline.Input standingPickupInput = EvaluatorPipeline.Input
+			.perUnit("standingPickup", this::findStandingPickupPoints);
+	private final EvaluatorPipeline.Input teamDamageInput = EvaluatorPipeline.Input
+			.perTurn("teamDamage", this::findTeamDamage);
+
+	// The heuristic terms of each action, as stages that are weighted and
+	// timed separately
+	private final EvaluatorPipeline movePipeline = createMovePipeline();
+	private final EvaluatorPipeline shootPipeline = new EvaluatorPipeline(
+			"shoot").add("shoot", this::pointsForShoot, this::shootUpperBound);
+	private final EvaluatorPipeline shieldPipeline = new EvaluatorPipeline(
+			"shield").add("shield", (i, tile, target) -> pointsForShield(i),
+			this::shieldUpperBound);
+	// The points for picking up are computed as an input, so they are their
+	// own bound
+	private final EvaluatorPipeline pickupPipeline = new EvaluatorPipeline(
+			"pickup").add("pickup",
+			(i, tile, target) -> standingPickupPoints[i],
+			i -> standingPickupPoints[i], standingPickupInput);
+	private final EvaluatorPipeline[] pipelines = { movePipeline,
+			shootPipeline, shieldPipeline, pickupPipeline };
+	// Which friendlyUnit goes for each control point and pickup this turn
+	private final ObjectiveAllocator objectives = new ObjectiveAllocator();
+	// What each objective is worth to each friendlyUnit this turn, with a
+	// null row for the dead units, and the rows themselves
+	private double[][] utilities;
+	private double[][] utilityRows;
+	// The number of moves from each friendlyUnit to every tile this turn,
+	// built between turns if we were lucky, and the buffers for the units
+	// that weren't
+	private int[][] unitDistances;
+	private int[][] unitDistanceBuffers;
+	private int[] distanceQueue;
+
+	// The number of enemies at each distance from the control point being
+	// valued, up to CP_DEFEND_ENEMY_PROXIMITY
+	private final int[] enemiesNearControlPoint = new int[CP_DEFEND_ENEMY_PROXIMITY + 1];
+
+	// Reused to collect the target of a scored action
+	private final EvaluatorPipeline.Target moveTarget = new EvaluatorPipeline.Target();
+	private final EvaluatorPipeline.Target actionTarget = new EvaluatorPipeline.Target();
+
+	// The actions a unit can take, whether the unit being evaluated can take
+	// each, the bound on its points and the order they are evaluated in
+	private static final Action[] ACTIONS = Action.values();
+	private final boolean[] actionAllowed = new boolean[Action.STANDBY
+			.ordinal()];
+	private final int[] actionBounds = new int[Action.STANDBY.ordinal()];
+	private final int[] actionOrder = new int[Action.STANDBY.ordinal()];
+
+	// How many action categories and move directions were evaluated in full,
+	// and how many were skipped because their bound couldn't beat the best
+	// action found so far
+	private long evaluations;
+	private long prunedEvaluations;
+
+	// Records turn latency against team and map size, if enabled
+	private final TurnStats turnStats;
+
+	// Builds next turn's structures while we wait for the engine, if enabled
+	private final Speculator speculator;
+
+	// Whether the turns played are WarmUp's synthetic ones, which are neither
+	// printed nor recorded, and where the turns are printed
+	private final boolean warmingUp;
+	private final PrintStream out;
+
+	// The engine's World and units, as the GameView the turns are played on
+	private final EngineView engineView = new EngineView();
+
+	public PlayerAI() {
+		this(false);
+		if (WARM_UP) {
+			long start = System.nanoTime();
+			WarmUp warmUp = WarmUp.run(WARM_UP_NANOS);
+			if (warmUp != null) {
+				out.println("Warmed up with " + warmUp.turns()
+						+ " synthetic turns in "
+						+ (System.nanoTime() - start) / 1000000
+						+ " ms, the first took "
+						+ warmUp.firstTurnNanos() / 1000
+						+ " us and the last " + warmUp.lastTurnNanos() / 1000
+						+ " us");
+			}
+		}
+	}
+
+	/**
+	 * @param warmingUp
+	 *            Whether the PlayerAI will play WarmUp's synthetic turns
+	 *            rather than the engine's.
+	 */
+	PlayerAI(boolean warmingUp) {
+		this.warmingUp = warmingUp;
+		out = warmingUp ? new PrintStream(OutputStream.nullOutputStream())
+				: System.out;
+		turnStats = warmingUp ? null : TurnStats.fromSystemProperty();
+		speculator = SPECULATE && !warmingUp ? new Speculator() : null;
+	}
+
+	/**
+	 * Determine whether a friendlyUnit can make a move action.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @return True if the friendlyUnit can make a move action, false otherwise.
+	 */
+	private boolean canMove(int i) {
+		// Check each direction to determine if the unit can move in that
+		// direction
+		for (Direction d : Direction.values()) {
+			if (moveValid(i, d)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine whether given point is a part of a control point
+	 * 
+	 * @param p
+	 *            Point we are interested in.
+	 * @return True if given point is a part of CP, false otherwise.
+	 */
+	private boolean isOnCP(Point p) {
+		// Check all control points, and check if we are within 1 block away
+		GameView.ControlPoint[] controlPoints = world.getControlPoints();
+
+		for (GameView.ControlPoint cp : controlPoints) {
+			// Only consider this cp if the current direction decreases
+			// the path length by 1
+			if (world.getPathLength(p, cp.getPosition()) < 2)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Determine whether a friendlyUnit can make a shoot action.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @return True if the friendlyUnit can make a shoot action, false
+	 *         otherwise.
+	 */
+	private boolean canShoot(int i) {
+		for (int j = 0; j < enemyUnits.length; j++) {
+			if (canHitEnemy[i][j]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine whether a friendlyUnit can make a shield action.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @return True if the friendlyUnit can make a shield action, false
+	 *         otherwise.
+	 */
+	private boolean canShield(int i) {
+		return friendlyUnits[i].checkShieldActivation() == ActivateShieldResult.SHIELD_ACTIVATION_VALID;
+	}
+
+	/**
+	 * Determine whether a friendlyUnit can make a pickup action.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @return True if the friendlyUnit can make a pickup action, false
+	 *         otherwise.
+	 */
+	private boolean canPickup(int i) {
+		return friendlyUnits[i].checkPickupResult() == PickupResult.PICK_UP_VALID;
+	}
+
+	/**
+	 * Determine number of units of a team that are still alive.
+	 * 
+	 * @param units
+	 *            The units of the team we are interested in.
+	 * @return number of units with health left
+	 */
+	private static int numberOfLivingUnits(GameView.Unit[] units) {
+		int counter = 0;
+		for (GameView.Unit unit : units) {
+			if (unit.getHealth() > 0) {
+				counter++;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Determine number of control points controlled by a team.
+	 * 
+	 * @param team
+	 *            Team we are interested in.
+	 * @return number of control points controlled by the team
+	 */
+	private int numberOfControlPointsControlled(Team team) {
+		GameView.ControlPoint[] controlPoints = world.getControlPoints();
+		int counter = 0;
+		for (int i = 0; i < controlPoints.length; i++) {
+			if (controlPoints[i].getControllingTeam() == team) {
+				counter++;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Determine number of mainframes controlled by a team.
+	 * 
+	 * @param team
+	 *            Team we are interested in.
+	 * @return number of mainframes controlled by the team
+	 */
+	private int numberOfMainframesControlled(Team team) {
+		GameView.ControlPoint[] controlPoints = world.getControlPoints();
+		int counter = 0;
+		for (int i = 0; i < controlPoints.length; i++) {
+			if (controlPoints[i].isMainframe()
+					&& controlPoints[i].getControllingTeam() == team) {
+				counter++;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Determines if movement for a unit in a direction is valid. This considers
+	 * whether the previous move attempt succeeded (only if it was to the same
+	 * tile we are trying to move to now), whether there is an enemy there, and
+	 * guarantees that we won't move two units to the same location, move a
+	 * unit to a location that another unit won't move out of this turn, swap
+	 * two units or move onto a tile another unit has reserved.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @param d
+	 *            The direction we are thinking of moving that unit in.
+	 * @return Whether or not we are allowed to move the unit in that direction.
+	 */
+	private boolean moveValid(int i, Direction d) {
+		Point movePosition = d.movePoint(friendlyUnits[i].getPosition());
+		if (!map.contains(movePosition)) {
+			return false;
+		}
+		int from = map.index(friendlyUnits[i].getPosition());
+		int to = map.index(movePosition);
+
+		// Moves onto living enemies are not valid, and neither are moves onto a
+		// location occupied by a friendly unit that doesn't plan to move or
+		// that another friendly unit is already planning to move to
+		if (occupancy.hasEnemy(to) || occupancy.isBlockedForFriendly(to)) {
+			return false;
+		}
+
+		// If our last move to this tile failed, or another unit has reserved
+		// it or would be swapping places with us
+		if (!reservations.canMove(i, from, to)) {
+			return false;
+		}
+		return friendlyUnits[i].checkMove(d) == MoveResult.MOVE_VALID;
+	}
+
+	/**
+	 * Returns the difference in path lengths between a and target and b and
+	 * target.
+	 * 
+	 * @param a
+	 *            The starting Point for the first path to target.
+	 * @param b
+	 *            The starting Point for the second path to target.
+	 * @param target
+	 *            The target Point.
+	 * @return (the path length of a -> target) - (the path length of b ->
+	 *         target)
+	 */
+	private int getDifferenceInPathLengths(Point a, Point b, Point target) {
+		return pathLength(a, target) - pathLength(b, target);
+	}
+
+	/**
+	 * Returns the length of the path between a friendlyUnit and a target, or
+	 * between one of the tiles next to it and the target, going around other
+	 * units where that is shorter than waiting for them to move.
+	 * 
+	 * @param from
+	 *            The position of the friendlyUnit being evaluated or a point
+	 *            it can move to.
+	 * @param target
+	 *            The target Point.
+	 * @return The path length, or Pathfinder.UNREACHABLE.
+	 */
+	private int pathLength(Point from, Point target) {
+		return pathfinder.distance(map.index(from), map.index(target));
+	}
+
+	/**
+	 * Determine the maximum number of points we can get if we were to perform a
+	 * move action for a specific friendlyUnit.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @param mustBeat
+	 *            The points of the best other action. Directions that can't
+	 *            score more than this are skipped. moveUpperBound(i) must have
+	 *            been called first.
+	 * @return An estimate of the number of points for the best move action we
+	 *         can take, or Integer.MIN_VALUE if no direction could beat
+	 *         mustBeat.
+	 */
+	private int pointsForMove(int i, int mustBeat) {
+		int maxPoints = Integer.MIN_VALUE;
+		Direction bestDirection = null;
+		Point bestTarget = null;
+		int directionMustBeat = mustBeat == Integer.MIN_VALUE ? Integer.MIN_VALUE
+				: (int) Math.floor(mustBeat / MOVE_MULTIPLIER);
+
+		// For each direction
+		for (Direction d : Direction.values()) {
+			// If we can actually travel in that direction
+			if (moveValid(i, d)) {
+				Point directionPoint = d.movePoint(friendlyUnits[i]
+						.getPosition());
+				// Add up the move stages, skipping the rest as soon as they
+				// can't make this the best direction
+				int pointsForDirection = movePipeline.score(i,
+						map.index(directionPoint),
+						Math.max(maxPoints, directionMustBeat), moveTarget);
+				if (pointsForDirection == EvaluatorPipeline.PRUNED) {
+					prunedEvaluations++;
+					continue;
+				}
+				evaluations++;
+
+				// Choose the direction that maximizes our points
+				if (pointsForDirection > maxPoints) {
+					maxPoints = pointsForDirection;
+					bestDirection = d;
+					// The point that contributes the most to this direction
+					bestTarget = moveTarget.target >= 0 ? map
+							.point(moveTarget.target) : null;
+				}
+			}
+		}
+
+		bestMoveDirections[i] = bestDirection;
+		moveTargets[i] = bestTarget;
+
+		return maxPoints;
+	}
+
+	/**
+	 * Build the stages that score a move to a tile, in the order they run.
+	 * The cheap terms go first so that the ones that ask the pathfinder can be
+	 * skipped: a damage field lookup, then checks against each enemy and
+	 * teammate, then the distances to the objectives.
+	 */
+	private EvaluatorPipeline createMovePipeline() {
+		return new EvaluatorPipeline("move")
+				.add("threat", this::pointsForThreat, this::threatUpperBound)
+				.add("damageDealt", this::pointsForDamageDealt,
+						this::damageDealtUpperBound, teamDamageInput)
+				.add("grouping", this::pointsForGrouping,
+						this::groupingUpperBound)
+				.add("controlPoints", this::pointsForControlPoints,
+						this::controlPointsUpperBound, controlPointValuesInput)
+				.add("pickups", this::pointsForPickups,
+						this::pickupsUpperBound, pickupValuesInput,
+						standingPickupInput)
+				.add("helping", this::pointsForHelping,
+						this::helpingUpperBound);
+	}
+
+	/**
+	 * Points for heading to the control points assigned to the ith
+	 * friendlyUnit from a tile next to it.
+	 */
+	private int pointsForControlPoints(int i, int tile,
+			EvaluatorPipeline.Target target) {
+		int pointsForDirection = 0;
+		Point directionPoint = map.point(tile);
+		GameView.ControlPoint[] controlPoints = world.getControlPoints();
+
+		for (int c = 0; c < controlPoints.length; c++) {
+			GameView.ControlPoint cp = controlPoints[c];
+			// Leave the control points assigned to other units to them
+			if (objectives.owner(c) != i) {
+				continue;
+			}
+			// Only consider this cp if the current direction decreases
+			// the path length by 1
+			if (getDifferenceInPathLengths(friendlyUnits[i].getPosition(),
+					directionPoint, cp.getPosition()) != 1) {
+				continue;
+			}
+			int distanceToCP = pathLength(directionPoint, cp.getPosition());
+			// any point within 1 radius counts as CP point
+			if (distanceToCP == 0)
+				distanceToCP++;
+			// Make the points for this cp drop off with distance
+			// according to x^MOVE_DISTANCE_EXPONENT
+			double pointsForCP = cpValues[c]
+					/ Math.pow(distanceToCP, distanceExponentOf(cp));
+			pointsForDirection += pointsForCP;
+			target.offer(map.index(cp.getPosition()), pointsForCP);
+		}
+		return pointsForDirection;
+	}
+
+	/**
+	 * Determine how many points heading for a control point is worth before
+	 * the distance to it is taken into account.
+	 * 
+	 * @param cp
+	 *            The control point we are interested in.
+	 * @return The points for reaching the control point.
+	 */
+	private int valueOfControlPoint(GameView.ControlPoint cp) {
+		int cpPoints;
+		// How far the closest living enemy is from the cp
+		int pathLengthFromEnemy = territory.enemyDistance(cp.getPosition());
+		if (cp.getControllingTeam() == friendlyTeam) {
+			cpPoints = 0;
+			// defend the point if there are enemies around, more so the more
+			// of them there are
+			territory.enemiesNear(cp.getPosition(), CP_DEFEND_ENEMY_PROXIMITY,
+					enemiesNearControlPoint);
+			for (int d = 0; d <= CP_DEFEND_ENEMY_PROXIMITY; d++) {
+				cpPoints += enemiesNearControlPoint[d]
+						* (CP_DEFEND_ENEMY_PROXIMITY - Math.max(d, 1))
+						* CP_DEFEND_POINTS_PER_MOVE_MULTIPLIER;
+			}
+		} else if (cp.getControllingTeam() == enemyTeam) {
+			// NEUTRALIZE_CONTROL_POINT_POINTS extra points for
+			// neutralizing an opposing control
+			// point
+			cpPoints = NEUTRALIZE_CONTROL_POINT_POINTS;
+
+			if (cp.isMainframe()) {
+				// add 400 extra points for mainframe
+				cpPoints += 400;
+			} else if (pathLengthFromEnemy <= CP_GUARD_DISTANCE) {
+				// Don't go to enemy cp that are guarded
+				cpPoints = 0;
+			}
+		} else {
+			cpPoints = CAPTURE_CONTROL_POINT_POINTS;
+		}
+		return cpPoints;
+	}
+
+	/**
+	 * Determine how fast the points for a control point drop off with the
+	 * distance to it.
+	 * 
+	 * @param cp
+	 *            The control point we are interested in.
+	 * @return The exponent of the distance.
+	 */
+	private float distanceExponentOf(GameView.ControlPoint cp) {
+		if (cp.getControllingTeam() == enemyTeam && cp.isMainframe()) {
+			// if we have no mainframes, but enemy does
+			if (friendlyMainframes == 0 && enemyMainframes > 0) {
+				// rush for mainframe!!!
+				return 1;
+			}
+			return MOVE_DISTANCE_MAINFRAME_EXPONENT;
+		}
+		return MOVE_DISTANCE_EXPONENT;
+	}
+
+	/**
+	 * Find the number of moves from each living friendlyUnit to every tile,
+	 * once per turn, taking them from the speculator where it built them.
+	 */
+	private void findUnitDistances() {
+		for (int i = 0; i < friendlyUnits.length; i++) {
+			if (friendlyUnits[i].getHealth() <= 0) {
+				unitDistances[i] = null;
+				continue;
+			}
+			int tile = map.index(friendlyUnits[i].getPosition());
+			int[] distances = speculator != null ? speculator.distancesFrom(i,
+					tile) : null;
+			if (distances == null) {
+				map.distances(tile, unitDistanceBuffers[i], distanceQueue);
+				distances = unitDistanceBuffers[i];
+			}
+			unitDistances[i] = distances;
+		}
+	}
+
+	/**
+	 * Share the control points and pickups out between the friendlyUnits for
+	 * this turn. Each unit values an objective at its points over the path
+	 * length to it, measured by the pathfinder as in the move stages and with
+	 * the same drop off as in pointsForMove. The obstacles must be set up for
+	 * the turn.
+	 */
+	private void allocateObjectives() {
+		GameView.ControlPoint[] controlPoints = world.getControlPoints();
+		GameView.Pickup[] pickups = world.getPickups();
+		int count = controlPoints.length + pickups.length;
+		controlPointValuesInput.ensure(0);
+		for (int i = 0; i < friendlyUnits.length; i++) {
+			if (friendlyUnits[i].getHealth() <= 0) {
+				utilities[i] = null;
+				continue;
+			}
+			pickupValuesInput.ensure(i);
+			if (utilityRows[i].length < count) {
+				utilityRows[i] = new double[count];
+			}
+			double[] row = utilityRows[i];
+			Arrays.fill(row, 0, count, 0);
+			utilities[i] = row;
+
+			// A unit is no obstacle to its own paths
+			int tile = map.index(friendlyUnits[i].getPosition());
+			pathfinder.removeObstacle(tile);
+			pathSources[0] = tile;
+			pathfinder.beginSources(pathSources, 1, unitDistances[i]);
+			for (int c = 0; c < controlPoints.length; c++) {
+				int distance = pathfinder.distance(tile,
+						map.index(controlPoints[c].getPosition()));
+				if (distance != Pathfinder.UNREACHABLE) {
+					row[c] = cpValues[c]
+							/ Math.pow(Math.max(distance, 1),
+									distanceExponentOf(controlPoints[c]));
+				}
+			}
+			for (int p = 0; p < pickups.length; p++) {
+				int distance = pathfinder.distance(tile,
+						map.index(pickups[p].getPosition()));
+				if (distance != Pathfinder.UNREACHABLE) {
+					row[controlPoints.length + p] = pickupValues[i][p]
+							/ Math.pow(distance + 1, MOVE_DISTANCE_EXPONENT);
+				}
+			}
+			pathfinder.addObstacle(tile);
+		}
+		objectives.allocate(utilities, friendlyUnits.length, count);
+	}
+
+	/**
+	 * Value every control point for this turn.
+	 */
+	private void findControlPointValues() {
+		GameView.ControlPoint[] controlPoints = world.getControlPoints();
+		if (cpValues.length < controlPoints.length) {
+			cpValues = new int[controlPoints.length];
+		}
+		for (int c = 0; c < controlPoints.length; c++) {
+			cpValues[c] = valueOfControlPoint(controlPoints[c]);
+		}
+	}
+
+	/**
+	 * Value every pickup for the ith friendlyUnit this turn.
+	 */
+	private void findPickupValues(int i) {
+		GameView.Pickup[] pickups = world.getPickups();
+		if (pickupValues[i].length < pickups.length) {
+			pickupValues[i] = new int[pickups.length];
+		}
+		for (int k = 0; k < pickups.length; k++) {
+			pickupValues[i][k] = valueOfPickup(i, pickups[k].getPickupType());
+		}
+	}
+
+	/**
+	 * Find the points for the ith friendlyUnit picking up what it stands on
+	 * this turn, or -1 if it can't.
+	 */
+	private void findStandingPickupPoints(int i) {
+		standingPickupPoints[i] = canPickup(i) ? pointsForPickup(i) : -1;
+	}
+
+	/**
+	 * Add up the damage of every friendlyUnit's weapon.
+	 */
+	private void findTeamDamage() {
+		teamDamage = 0;
+		for (GameView.Friendly friendlyUnit : friendlyUnits) {
+			teamDamage += friendlyUnit.getCurrentWeapon().getDamage();
+		}
+	}
+
+	/**
+	 * Points for heading to the pickups assigned to the ith friendlyUnit from
+	 * a tile next to it.
+	 */
+	private int pointsForPickups(int i, int tile,
+			EvaluatorPipeline.Target target) {
+		int pointsForDirection = 0;
+		Point directionPoint = map.point(tile);
+		GameView.Pickup[] pickups = world.getPickups();
+		int firstPickup = world.getControlPoints().length;
+
+		for (int k = 0; k < pickups.length; k++) {
+			GameView.Pickup p = pickups[k];
+			// Leave the pickups assigned to other units to them
+			if (objectives.owner(firstPickup + k) != i) {
+				continue;
+			}
+			// Only consider this pickup if the current direction
+			// decreases the path length by 1
+			if (getDifferenceInPathLengths(friendlyUnits[i].getPosition(),
+					directionPoint, p.getPosition()) != 1) {
+				continue;
+			}
+			int pickupPoints = pickupValues[i][k];
+			// if there is a pickup at where we are right now
+			// and it's value is greater than potential pickup
+			// ignore potential pickup
+			if (standingPickupPoints[i] >= pickupPoints) {
+				continue;
+			}
+			// Make the points for this pickup drop off with distance
+			// according to x^MOVE_DISTANCE_EXPONENT
+			double pointsForThisPickup = pickupPoints
+					/ Math.pow(pathLength(directionPoint, p.getPosition()) + 1,
+							MOVE_DISTANCE_EXPONENT);
+			pointsForDirection += pointsForThisPickup;
+			target.offer(map.index(p.getPosition()), pointsForThisPickup);
+		}
+		return pointsForDirection;
+	}
+
+	/**
+	 * Points for heading from a tile next to the ith friendlyUnit towards the
+	 * enemies that shot our other units last turn.
+	 */
+	private int pointsForHelping(int i, int tile,
+			EvaluatorPipeline.Target target) {
+		int pointsForDirection = 0;
+		Point directionPoint = map.point(tile);
+
+		for (int j = 0; j < friendlyUnits.length; j++) {
+			int pointsForEnemy = 0;
+			int closestEnemy = Integer.MAX_VALUE;
+			Point lastUnitLocation = friendlyUnits[j].getPosition();
+			// skip yourself
+			if (j == i)
+				continue;
+			if (friendlyUnits[j].getDamageTakenLastTurn() > 0) {
+				// if a friendly took damage last turn
+				// get an array of enemies that attacked that friendly
+				GameView.Enemy enemyUnitsWhoAttacked[] = friendlyUnits[j]
+						.getEnemiesWhoShotMeLastTurn();
+				// if enemies that shot friendly are within 5 range, go
+				// towards them
+				for (int k = 0; k < enemyUnitsWhoAttacked.length; k++) {
+					if (pathLength(friendlyUnits[i].getPosition(),
+							enemyUnitsWhoAttacked[k].getPosition()) < 6
+							&& pathLength(friendlyUnits[i].getPosition(),
+									enemyUnitsWhoAttacked[k].getPosition()) < closestEnemy) {
+						// Only consider going there if the current
+						// direction
+						// decreases the path length by 1
+						if (getDifferenceInPathLengths(
+								friendlyUnits[i].getPosition(), directionPoint,
+								enemyUnitsWhoAttacked[k].getPosition()) != 1) {
+							continue;
+						} else {
+							pointsForEnemy = POINTS_FOR_HELPING_OUT_FRIENDLY;
+							lastUnitLocation = enemyUnitsWhoAttacked[k]
+									.getPosition();
+							closestEnemy = pathLength(
+									friendlyUnits[i].getPosition(),
+									enemyUnitsWhoAttacked[k].getPosition());
+						}
+
+					}
+				}
+			} else {
+				continue;
+			}
+
+			// Move to help out friendly unit. We are not using
+			// exponential here
+			// There is no point in getting real close, so anything
+			// closer than 3 units is same rate
+			int distanceToEnemy = pathLength(directionPoint, lastUnitLocation);
+			if (distanceToEnemy < 3)
+				distanceToEnemy = 3;
+			int pointsForHelping = pointsForEnemy / distanceToEnemy;
+			pointsForDirection += pointsForHelping;
+			target.offer(map.index(lastUnitLocation), pointsForHelping);
+		}
+		return pointsForDirection;
+	}
+
+	/**
+	 * Points for the damage the ith friendlyUnit avoids taking by moving to a
+	 * tile rather than staying where it is. Negative if it takes more.
+	 */
+	private int pointsForThreat(int i, int tile,
+			EvaluatorPipeline.Target target) {
+		// Calculate the damage and points received by the enemy for
+		// damaging us in the new position
+		Point directionPoint = map.point(tile);
+		int potentialDamageTakenByMoving = maximumPotentialDamageTaken(directionPoint);
+		int damageTakenByMovingPoints = potentialDamageTakenByMoving
+				* POINTS_PER_DAMAGE;
+
+		// If the hit will kill us then factor in the enemy gaining
+		// ENEMY_KILL_POINTS
+		if (damageField.isLethal(directionPoint, friendlyUnits[i].getHealth())) {
+			damageTakenByMovingPoints += ENEMY_KILL_POINTS;
+		}
+
+		// Use the difference in damage between moving to the new
+		// position and staying in the current position
+		return -(damageTakenByMovingPoints - damageTakenByStayingPoints);
+	}
+
+	/**
+	 * Points for the extra damage our team can deal next turn if the ith
+	 * friendlyUnit moves to a tile rather than staying where it is.
+	 */
+	private int pointsForDamageDealt(int i, int tile,
+			EvaluatorPipeline.Target target) {
+		return maximumPotentialDamageDealtPoints(i, map.point(tile))
+				- damageDealtByStayingPoints;
+	}
+
+	/**
+	 * If no one has mainframes, points for the ith friendlyUnit moving to a
+	 * tile on its way to a distant teammate.
+	 */
+	private int pointsForGrouping(int i, int tile,
+			EvaluatorPipeline.Target target) {
+		// If no one has mainframes
+		if (friendlyMainframes != 0 || enemyMainframes != 0) {
+			return 0;
+		}
+		// Find the first step and the distance to every other friendlyUnit
+		// once rather than once per direction
+		if (groupingUnit != i) {
+			groupingUnit = i;
+			int from = map.index(friendlyUnits[i].getPosition());
+			for (int j = 0; j < friendlyUnits.length; j++) {
+				if (j != i) {
+					int goal = map.index(friendlyUnits[j].getPosition());
+					// The same routes around units as the other move terms
+					groupingSteps[j] = pathfinder.path(from, goal,
+							groupingStep, 0) > 0 ? groupingStep[0] : -1;
+					groupingPathLengths[j] = pathfinder.distance(from, goal);
+				}
+			}
+		}
+
+		int pointsForDirection = 0;
+		// Try to gather as a group to stay alive
+		for (int j = 0; j < friendlyUnits.length; j++) {
+			// If moving in this direction will take us to another
+			// friendlyUnit
+			if (i != j && groupingSteps[j] == tile) {
+				// Only move towards other friendlyUnits if the
+				// distance is larger than
+				// NO_MAINFRAME_MAX_TEAM_DISTANCE
+				int pathLength = groupingPathLengths[j];
+				if (pathLength > NO_MAINFRAME_MAX_TEAM_DISTANCE) {
+					pointsForDirection += NO_MAINFRAME_GROUPING_POINTS
+							/ (pathLength + 1);
+				}
+			}
+		}
+		return pointsForDirection;
+	}
+
+	/**
+	 * Determine an upper bound on pointsForMove(i) without looking at each
+	 * direction, as the sum of the bounds of the move stages.
+	 * <p>
+	 * Also computes the damage points for staying in place that the threat
+	 * and damage dealt stages need for every direction.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @return An upper bound on the points for the best move action.
+	 */
+	private int moveUpperBound(int i) {
+		Point position = friendlyUnits[i].getPosition();
+		int potentialDamageTakenByStaying = maximumPotentialDamageTaken(position);
+		damageTakenByStayingPoints = potentialDamageTakenByStaying
+				* POINTS_PER_DAMAGE;
+		if (damageField.isLethal(position, friendlyUnits[i].getHealth())) {
+			damageTakenByStayingPoints += ENEMY_KILL_POINTS;
+		}
+		damageDealtByStayingPoints = maximumPotentialDamageDealtPoints(i,
+				position);
+		groupingUnit = -1;
+
+		return movePipeline.bound(i);
+	}
+
+	/**
+	 * A direction only scores a control point if it brings the unit one tile
+	 * closer to it, so each control point assigned to the unit contributes at
+	 * most its points over the distance that remains after that step.
+	 */
+	private int controlPointsUpperBound(int i) {
+		Point position = friendlyUnits[i].getPosition();
+		GameView.ControlPoint[] controlPoints = world.getControlPoints();
+		double bound = 0;
+		for (int c = 0; c < controlPoints.length; c++) {
+			if (objectives.owner(c) != i) {
+				continue;
+			}
+			int pathLength = pathLength(position, controlPoints[c]
+					.getPosition());
+			if (pathLength < 1) {
+				continue;
+			}
+			// The distance exponent is never below 1
+			bound += (double) cpValues[c]
+					/ Math.max(pathLength - 1, 1);
+		}
+		return (int) Math.ceil(bound);
+	}
+
+	/**
+	 * The same as controlPointsUpperBound(i) for pickups.
+	 */
+	private int pickupsUpperBound(int i) {
+		Point position = friendlyUnits[i].getPosition();
+		GameView.Pickup[] pickups = world.getPickups();
+		int firstPickup = world.getControlPoints().length;
+		double bound = 0;
+		for (int k = 0; k < pickups.length; k++) {
+			if (objectives.owner(firstPickup + k) != i) {
+				continue;
+			}
+			int pathLength = pathLength(position, pickups[k].getPosition());
+			if (pathLength < 1) {
+				continue;
+			}
+			bound += pickupValues[i][k]
+					/ Math.pow(pathLength, MOVE_DISTANCE_EXPONENT);
+		}
+		return (int) Math.ceil(bound);
+	}
+
+	/**
+	 * Every teammate that took damage is helped at the closest rate.
+	 */
+	private int helpingUpperBound(int i) {
+		int bound = 0;
+		for (int j = 0; j < friendlyUnits.length; j++) {
+			if (j != i && friendlyUnits[j].getDamageTakenLastTurn() > 0) {
+				// Anything closer than 3 tiles gets the same points
+				bound += POINTS_FOR_HELPING_OUT_FRIENDLY / 3;
+			}
+		}
+		return bound;
+	}
+
+	/**
+	 * Moving can at best avoid all the damage we would take by staying.
+	 */
+	private int threatUpperBound(int i) {
+		return damageTakenByStayingPoints;
+	}
+
+	/**
+	 * Moving can at best deal the most damage our whole team could deal to
+	 * one enemy.
+	 */
+	private int damageDealtUpperBound(int i) {
+		return teamDamage * friendlyUnits.length * POINTS_PER_DAMAGE
+				+ ENEMY_KILL_POINTS - damageDealtByStayingPoints;
+	}
+
+	/**
+	 * Every teammate is just far enough away to be worth heading for.
+	 */
+	private int groupingUpperBound(int i) {
+		if (friendlyMainframes != 0 || enemyMainframes != 0) {
+			return 0;
+		}
+		return (friendlyUnits.length - 1)
+				* (NO_MAINFRAME_GROUPING_POINTS / (NO_MAINFRAME_MAX_TEAM_DISTANCE + 2));
+	}
+
+	/**
+	 * Determine an upper bound on pointsForShoot(i): every friendlyUnit hits
+	 * the same enemy and kills it while we defend a control point.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @return An upper bound on the points for the best shot.
+	 */
+	private int shootUpperBound(int i) {
+		int teamDamage = 0;
+		for (GameView.Friendly friendlyUnit : friendlyUnits) {
+			teamDamage += friendlyUnit.getCurrentWeapon().getDamage();
+		}
+		long points = (long) teamDamage * friendlyUnits.length
+				* POINTS_PER_DAMAGE + ENEMY_KILL_POINTS;
+		return (int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(points
+				* MAINFRAME_DAMAGE_MULTIPLIER)
+				* CP_DEFEND_SHOOT_MULTIPLIER);
+	}
+
+	/**
+	 * Determine an upper bound on pointsForShield(i): every living enemy hits
+	 * the unit and kills it.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @return An upper bound on the points for shielding.
+	 */
+	private int shieldUpperBound(int i) {
+		int enemyDamage = 0;
+		int aliveEnemies = 0;
+		for (GameView.Enemy enemyUnit : enemyUnits) {
+			if (enemyUnit.getHealth() > 0) {
+				enemyDamage += enemyUnit.getCurrentWeapon().getDamage();
+				aliveEnemies++;
+			}
+		}
+		int points = enemyDamage * aliveEnemies * POINTS_PER_DAMAGE
+				+ ENEMY_KILL_POINTS;
+		return (int) Math.ceil(points * MAINFRAME_DEFENSE_MULTIPLIER);
+	}
+
+	/**
+	 * Determine the maximum number of points we can get if we were to perform a
+	 * shoot action for a specific friendlyUnit.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @return An estimate of the number of points for the best shot we can
+	 *         make.
+	 */
+	private int pointsForShoot(int i) {
+		// for each enemy, check what happens if all friendly units try to shot
+		// him
+		int maxPoints = Integer.MIN_VALUE;
+		int minEnemyHP = Integer.MAX_VALUE;
+		for (int j = 0; j < enemyUnits.length; j++) {
+			// If shooting the current enemy isn't valid, skip it
+			if (!canHitEnemy[i][j]) {
+				continue;
+			}
+			// The total amount of damage we can do to this enemy with all
+			// units
+			int totalDamage = shotDamageOnEnemy[j];
+			int damageMultiplier = shootersOfEnemy[j];
+			int damage = totalDamage * damageMultiplier;
+			int points = damage * POINTS_PER_DAMAGE;
+			// if we kill the enemy, add ENEMY_KILL_POINTS points
+			if (enemyUnits[j].getHealth() <= damage) {
+				points += ENEMY_KILL_POINTS;
+			}
+			// If the enemy doesn't have a mainframe and we do, we want to shoot
+			// them more
+			if (enemyMainframes == 0 && friendlyMainframes > 0) {
+				// TODO: figure out a multiplier in case enemies have no
+				// mainframes,
+				// but we have mainframes
+				points = (int) (points * MAINFRAME_DAMAGE_MULTIPLIER);
+			}
+			// Choose the enemy to shoot that maximizes our points
+			if (points > maxPoints) {
+				maxPoints = points;
+				enemiesToShoot[i] = enemyUnits[j];
+				minEnemyHP = enemyUnits[j].getHealth();
+			} else if (points == maxPoints) {
+				// if we can shoot more than 1 guy
+				if (enemyUnits[j].getHealth() < minEnemyHP) {
+					// we pick guy with least health
+					maxPoints = points;
+					enemiesToShoot[i] = enemyUnits[j];
+					minEnemyHP = enemyUnits[j].getHealth();
+				}
+			}
+		}
+		if (isOnCP(friendlyUnits[i].getPosition()))
+			maxPoints = maxPoints * CP_DEFEND_SHOOT_MULTIPLIER;
+		return maxPoints;
+	}
+
+	/**
+	 * The shoot stage: pointsForShoot(i), choosing the index of the enemy to
+	 * shoot as target.
+	 */
+	private int pointsForShoot(int i, int tile,
+			EvaluatorPipeline.Target target) {
+		int points = pointsForShoot(i);
+		target.choose(Arrays.asList(enemyUnits).indexOf(enemiesToShoot[i]));
+		return points;
+	}
+
+	/**
+	 * Determine the maximum number of points we can get if we were to perform a
+	 * shield action for a specific friendlyUnit.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @return An estimate of the number of points for shielding.
+	 */
+	private int pointsForShield(int i) {
+		// TODO: later on we could implement something to let us live longer if
+		// the other enemy has a mainframe and we do not
+
+		// calculate amount of damage we might take next turn
+		int amountOfDamageTaken = maximumPotentialDamageTaken(friendlyUnits[i]
+				.getPosition());
+		int amountOfPoints = amountOfDamageTaken * POINTS_PER_DAMAGE;
+		if (friendlyUnits[i].getHealth() < amountOfDamageTaken) {
+			// unit will die, and enemy will receive additional
+			// ENEMY_KILL_POINTS points
+			amountOfPoints += ENEMY_KILL_POINTS;
+		}
+		if (enemyMainframes > 0 && friendlyMainframes == 0) {
+			// if we have no mainframes, but enemy does
+			amountOfPoints = (int) (amountOfPoints * MAINFRAME_DEFENSE_MULTIPLIER);
+		}
+		return amountOfPoints;
+	}
+
+	/**
+	 * Determine the maximum potential damage that enemies can deal to a certain
+	 * point.
+	 * 
+	 * @param p
+	 *            point that we are interested in.
+	 * @return maximum damage that enemies can deal to that location next turn
+	 */
+	private int maximumPotentialDamageTaken(Point p) {
+		// The damage of every living enemy that can shoot the point, times
+		// the number of those enemies, for the whole map at once
+		return damageField.damageAt(p);
+	}
+
+	/**
+	 * Determine the maximum potential damage that we can deal to enemies if
+	 * friendlyUnit i moves to point p.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @param p
+	 *            The point we are interested in.
+	 * @return The maximum damage that we can deal to enemies if friendlyUnit i
+	 *         moves to Point p.
+	 */
+	private int maximumPotentialDamageDealtPoints(int i, Point p) {
+		int maxPoints = 0;
+		int range = friendlyUnits[i].getCurrentWeapon().getRange();
+		int weaponDamage = friendlyUnits[i].getCurrentWeapon().getDamage();
+
+		// For each enemyUnit
+		for (int j = 0; j < enemyUnits.length; j++) {
+			boolean alive = enemyUnits[j].getHealth() > 0;
+			boolean canHitFromP = world.canShooterShootTarget(p,
+					enemyUnits[j].getPosition(), range);
+			// If shooting the current enemy isn't valid, skip it
+			if (!canHitFromP && alive) {
+				continue;
+			}
+
+			// Start from the damage every friendlyUnit can deal from where it
+			// will be next turn, and replace the ith friendlyUnit's share with
+			// what it can deal from point p
+			int totalDamage = plannedDamageOnEnemy[j];
+			int damageMultiplier = plannedShootersOfEnemy[j];
+			if (plannedHits[i][j]) {
+				totalDamage -= weaponDamage;
+				damageMultiplier--;
+			}
+			if (canHitFromP && alive) {
+				totalDamage += weaponDamage;
+				damageMultiplier++;
+			}
+
+			int damage = totalDamage * damageMultiplier;
+			int points = damage * POINTS_PER_DAMAGE;
+			// if we kill the enemy, add ENEMY_KILL_POINTS points
+			if (enemyUnits[j].getHealth() <= damage) {
+				points += ENEMY_KILL_POINTS;
+			}
+
+			if (points > maxPoints) {
+				maxPoints = points;
+			}
+		}
+		return maxPoints;
+	}
+
+	/**
+	 * Record whether friendlyUnit k can shoot each enemyUnit from the point it
+	 * will be at next turn, and update the damage totals for each enemyUnit.
+	 * 
+	 * @param k
+	 *            The index of the friendlyUnit we are interested in.
+	 * @param nextPosition
+	 *            The point friendlyUnit k will be at next turn.
+	 */
+	private void updatePlannedHits(int k, Point nextPosition) {
+		int range = friendlyUnits[k].getCurrentWeapon().getRange();
+		int weaponDamage = friendlyUnits[k].getCurrentWeapon().getDamage();
+		for (int j = 0; j < enemyUnits.length; j++) {
+			boolean canHit = enemyUnits[j].getHealth() > 0
+					&& world.canShooterShootTarget(nextPosition,
+							enemyUnits[j].getPosition(), range);
+			if (canHit == plannedHits[k][j]) {
+				continue;
+			}
+			plannedHits[k][j] = canHit;
+			plannedDamageOnEnemy[j] += canHit ? weaponDamage : -weaponDamage;
+			plannedShootersOfEnemy[j] += canHit ? 1 : -1;
+		}
+	}
+
+	/**
+	 * Determine the maximum number of points we can get if we were to perform a
+	 * pickup action for a specific friendlyUnit.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @return An estimate of the number of points for picking up.
+	 */
+	private int pointsForPickup(int i) {
+		PickupType currentPickupType = world.getPickupAtPosition(
+				friendlyUnits[i].getPosition()).getPickupType();
+
+		int damageWillTake = maximumPotentialDamageTaken(friendlyUnits[i]
+				.getPosition());
+		// if pickup type is a health kit
+		if (currentPickupType == PickupType.REPAIR_KIT) {
+			if (damageWillTake >= REPAIR_KIT_HEALTH_AMOUNT) {
+				// if we will take more than REPAIR_KIT_HEALTH_AMOUNT dmg next
+				// move picking up repair kit will not be beneficial
+				return 0;
+			} else {
+				// net Health Gained * POINTS_PER_DAMAGE points + PICKUP_POINTS
+				// for pickup
+				return (REPAIR_KIT_HEALTH_AMOUNT - damageWillTake)
+						* POINTS_PER_DAMAGE + PICKUP_POINTS;
+			}
+		}
+		if (currentPickupType == PickupType.SHIELD) {
+			if (damageWillTake >= friendlyUnits[i].getHealth()) {
+				// if we will die in next move
+				// picking up shield will not be beneficial
+				// unless we have a mainframe
+				if (friendlyMainframes == 0) {
+					return 0;
+				} else {
+					return valueOfPickup(i, currentPickupType);
+				}
+			} else {
+				return valueOfPickup(i, currentPickupType);
+			}
+		}
+		// if it is a gun:
+		return valueOfPickup(i, currentPickupType);
+	}
+
+	private int valueOfPickup(int i, PickupType p) {
+		int value = 0;
+		WeaponType currentWeapon = friendlyUnits[i].getCurrentWeapon();
+		switch (p) {
+		case REPAIR_KIT:
+			value = 250;
+			break;
+		case SHIELD:
+			value = 200;
+			break;
+		case WEAPON_LASER_RIFLE:
+			switch (currentWeapon) {
+			case LASER_RIFLE:
+				value = PICKUP_POINTS;
+				break;
+			case MINI_BLASTER:
+				value = 100;
+				break;
+			case RAIL_GUN:
+				value = 0;
+				break;
+			case SCATTER_GUN:
+				value = 0;
+				break;
+			}
+			break;
+		case WEAPON_MINI_BLASTER:
+			switch (currentWeapon) {
+			case LASER_RIFLE:
+				value = 0;
+				break;
+			case MINI_BLASTER:
+				value = PICKUP_POINTS;
+				break;
+			case RAIL_GUN:
+				value = 0;
+				break;
+			case SCATTER_GUN:
+				value = 0;
+				break;
+			}
+			break;
+		case WEAPON_RAIL_GUN:
+			switch (currentWeapon) {
+			case LASER_RIFLE:
+				value = 200;
+				break;
+			case MINI_BLASTER:
+				value = 200;
+				break;
+			case RAIL_GUN:
+				value = PICKUP_POINTS;
+				break;
+			case SCATTER_GUN:
+				value = 200;
+				break;
+			}
+			break;
+		case WEAPON_SCATTER_GUN:
+			switch (currentWeapon) {
+			case LASER_RIFLE:
+				value = 150;
+				break;
+			case MINI_BLASTER:
+				value = 150;
+				break;
+			case RAIL_GUN:
+				value = 0;
+				break;
+			case SCATTER_GUN:
+				value = PICKUP_POINTS;
+				break;
+			}
+			break;
+		default:
+			value = 0;
+			break;
+
+		}
+		return value;
+	}
+
+	private void performMove(int i) {
+		out.println("      Moving to "
+				+ bestMoveDirections[i].movePoint(friendlyUnits[i]
+						.getPosition()));
+		friendlyUnits[i].move(bestMoveDirections[i]);
+		// Store the point that the current unit is planning to move to
+		currentMoveActions[i] = bestMoveDirections[i]
+				.movePoint(friendlyUnits[i].getPosition());
+
+		occupancy.commitMove(map.index(friendlyUnits[i].getPosition()),
+				map.index(currentMoveActions[i]));
+		updatePlannedHits(i, currentMoveActions[i]);
+		reservePathToTarget(i);
+	}
+
+	/**
+	 * Reserve the tiles the ith friendlyUnit will pass through over the next
+	 * few turns if it keeps heading towards its move target.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 */
+	private void reservePathToTarget(int i) {
+		int[] path = reservedPath;
+		path[0] = map.index(currentMoveActions[i]);
+		int length = 1;
+		if (moveTargets[i] != null) {
+			length += pathfinder.path(path[0], map.index(moveTargets[i]),
+					path, 1);
+		}
+		reservations.reservePath(i, path, length);
+	}
+
+	/**
+	 * Get the pathfinder ready to measure paths from the ith friendlyUnit and
+	 * from every point it can move to.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 */
+	private void beginPathQueries(int i) {
+		// Walls are never settled by a search, so only the tiles a unit can
+		// stand on are sources
+		int tile = map.index(friendlyUnits[i].getPosition());
+		int count = 0;
+		pathSources[count++] = tile;
+		for (int neighbour : map.neighbours(tile)) {
+			pathSources[count++] = neighbour;
+		}
+		// The moves from where the unit stands to every tile make the
+		// searches much more direct
+		pathfinder.beginSources(pathSources, count, unitDistances[i]);
+	}
+
+	private void performShoot(int i) {
+		out.println("      Shooting at "
+				+ enemiesToShoot[i].getASCIIIcon());
+		friendlyUnits[i].shootAt(enemiesToShoot[i]);
+	}
+
+	private void performShield(int i) {
+		friendlyUnits[i].activateShield();
+	}
+
+	private void performPickup(int i) {
+		friendlyUnits[i].pickupItemAtPosition();
+	}
+
+	/**
+	 * Determine the action that should be taken for the ith friendlyUnit, and
+	 * take that action.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @param turn
+	 *            The number of the current turn.
+	 */
+	private void doMove(int i, int turn) {
+		FlightEvents.Decision event = new FlightEvents.Decision();
+		event.begin();
+		// A unit is no obstacle to its own paths
+		boolean alive = friendlyUnits[i].getHealth() > 0;
+		if (alive) {
+			pathfinder.removeObstacle(map.index(friendlyUnits[i].getPosition()));
+		}
+
+		// Reuse the decision if we have already evaluated this unit in the
+		// same state
+		long key = worldHash ^ committedMovesHash ^ reservations.signature()
+				^ zobrist.hashDecidingUnit(i);
+		boolean cached = transpositions.probe(key, decision);
+		if (cached) {
+			restoreDecision(i, decision);
+		} else {
+			evaluate(i, decision);
+			transpositions.store(key, decision);
+		}
+
+		out.println("  Unit " + friendlyUnits[i].getASCIIIcon()
+				+ ": move=" + decision.movePoints + " shoot="
+				+ decision.shootPoints + " shield=" + decision.shieldPoints
+				+ " pickup=" + decision.pickupPoints);
+
+		// The unit stays where it is next turn unless it moves
+		reservations.hold(i);
+
+		switch (decision.action) {
+		case SHIELD:
+			out.println("    Performing shield");
+			performShield(i);
+			break;
+		case SHOOT:
+			out.println("    Performing shoot");
+			performShoot(i);
+			break;
+		case PICKUP:
+			out.println("    Performing pickup");
+			performPickup(i);
+			break;
+		case MOVE:
+			out.println("    Performing move");
+			performMove(i);
+			committedMovesHash ^= zobrist.hashCommittedMove(i,
+					currentMoveActions[i]);
+			break;
+		default:
+			out.println("    Standing by...");
+			friendlyUnits[i].standby();
+			break;
+		}
+
+		// The units deciding after this one path around where it will be
+		if (alive) {
+			pathfinder.addObstacle(map.index(currentMoveActions[i] != null
+					? currentMoveActions[i] : friendlyUnits[i].getPosition()));
+		}
+
+		if (!warmingUp && event.shouldCommit()) {
+			event.turn = turn;
+			event.unit = i;
+			event.action = decision.action.name();
+			event.movePoints = decision.movePoints;
+			event.shootPoints = decision.shootPoints;
+			event.shieldPoints = decision.shieldPoints;
+			event.pickupPoints = decision.pickupPoints;
+			event.evaluated = decision.evaluated;
+			event.cached = cached;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Score every action the ith friendlyUnit can take and choose the one that
+	 * maximizes our points.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @param out
+	 *            Filled with the scores and the chosen action.
+	 */
+	private void evaluate(int i, TranspositionTable.Entry out) {
+		int movePoints = 0;
+		int shootPoints = 0;
+		int shieldPoints = 0;
+		int pickupPoints = 0;
+		int evaluated = 0;
+
+		boolean canMove = canMove(i);
+		boolean canShoot = canShoot(i);
+		boolean canShield = canShield(i);
+		boolean canPickup = canPickup(i);
+
+		// Bound the points of every action we can take, cheaply, and evaluate
+		// the actions in order of decreasing bound. When several actions tie we
+		// prefer shield, then shoot, then pickup, then move, which is the order
+		// of Action, so an action is only worth evaluating if its bound beats
+		// the best points so far, or ties them and the action is preferred
+		boolean[] can = actionAllowed;
+		int[] bounds = actionBounds;
+		int[] order = actionOrder;
+		Arrays.fill(bounds, 0);
+		can[Action.SHIELD.ordinal()] = canShield;
+		can[Action.SHOOT.ordinal()] = canShoot;
+		can[Action.PICKUP.ordinal()] = canPickup;
+		can[Action.MOVE.ordinal()] = canMove;
+		if (canShield) {
+			bounds[Action.SHIELD.ordinal()] = (int) Math
+					.ceil(shieldPipeline.bound(i) * SHIELD_MULTIPLIER);
+		}
+		if (canShoot) {
+			bounds[Action.SHOOT.ordinal()] = (int) Math.ceil(shootPipeline
+					.bound(i) * SHOOT_MULTIPLIER);
+		}
+		if (canPickup) {
+			bounds[Action.PICKUP.ordinal()] = (int) Math
+					.ceil(pickupPipeline.bound(i) * PICKUP_MULTIPLIER);
+		}
+		if (canMove) {
+			beginPathQueries(i);
+			bounds[Action.MOVE.ordinal()] = (int) Math.ceil(moveUpperBound(i)
+					* MOVE_MULTIPLIER);
+		}
+		orderByBound(bounds, order);
+
+		// Use our heuristic functions to estimate the maximum number of points
+		// we can get this turn
+		int maxPoints = Integer.MIN_VALUE;
+		int bestAction = -1;
+		for (int a : order) {
+			if (!can[a]) {
+				continue;
+			}
+			if (cannotBeat(a, bounds[a], bestAction, maxPoints)) {
+				prunedEvaluations++;
+				continue;
+			}
+			evaluations++;
+			int points;
+			boolean scored = true;
+			int tile = map.index(friendlyUnits[i].getPosition());
+			switch (ACTIONS[a]) {
+			case SHIELD:
+				points = shieldPoints = (int) (shieldPipeline.score(i, tile,
+						Integer.MIN_VALUE, actionTarget) * SHIELD_MULTIPLIER);
+				break;
+			case SHOOT:
+				points = shootPoints = (int) (shootPipeline.score(i, tile,
+						Integer.MIN_VALUE, actionTarget) * SHOOT_MULTIPLIER);
+				enemiesToShoot[i] = actionTarget.target >= 0 ? enemyUnits[actionTarget.target]
+						: null;
+				break;
+			case PICKUP:
+				points = pickupPoints = (int) (pickupPipeline.score(i, tile,
+						Integer.MIN_VALUE, actionTarget) * PICKUP_MULTIPLIER);
+				break;
+			default:
+				int move = pointsForMove(i, bestAction >= 0 ? maxPoints
+						: Integer.MIN_VALUE);
+				points = (int) (move * MOVE_MULTIPLIER);
+				// Every direction may have been pruned
+				scored = move != Integer.MIN_VALUE;
+				if (scored) {
+					movePoints = points;
+				}
+				break;
+			}
+			if (scored) {
+				evaluated |= 1 << a;
+			}
+			if (bestAction < 0 || points > maxPoints
+					|| (points == maxPoints && a < bestAction)) {
+				maxPoints = points;
+				bestAction = a;
+			}
+		}
+
+		out.movePoints = movePoints;
+		out.shootPoints = shootPoints;
+		out.shieldPoints = shieldPoints;
+		out.pickupPoints = pickupPoints;
+		out.evaluated = evaluated;
+		out.direction = -1;
+		out.enemy = -1;
+		out.target = -1;
+		out.depth = 0;
+
+		out.action = bestAction >= 0 ? ACTIONS[bestAction]
+				: Action.STANDBY;
+		if (out.action == Action.SHOOT) {
+			out.enemy = Arrays.asList(enemyUnits).indexOf(enemiesToShoot[i]);
+		} else if (out.action == Action.MOVE) {
+			out.direction = bestMoveDirections[i].ordinal();
+			if (moveTargets[i] != null) {
+				out.target = map.index(moveTargets[i]);
+			}
+		}
+	}
+
+	/**
+	 * Order the actions by decreasing bound with an insertion sort, stable so
+	 * that ties stay in the order of Action.
+	 * 
+	 * @param bounds
+	 *            The bound of each action, by ordinal.
+	 * @param order
+	 *            Filled with the ordinals in the order to evaluate them.
+	 */
+	private static void orderByBound(int[] bounds, int[] order) {
+		for (int a = 0; a < order.length; a++) {
+			int j = a;
+			while (j > 0 && bounds[order[j - 1]] < bounds[a]) {
+				order[j] = order[j - 1];
+				j--;
+			}
+			order[j] = a;
+		}
+	}
+
+	/**
+	 * Determine whether an action can be skipped because its bound can't beat
+	 * the best action evaluated so far, preferring the earlier action in
+	 * Action on a tie.
+	 * 
+	 * @param action
+	 *            The ordinal of the action.
+	 * @param bound
+	 *            The bound on its points.
+	 * @param bestAction
+	 *            The ordinal of the best action so far, or -1.
+	 * @param maxPoints
+	 *            The points of the best action so far.
+	 * @return True if the action can't be chosen.
+	 */
+	private static boolean cannotBeat(int action, int bound, int bestAction,
+			int maxPoints) {
+		return bestAction >= 0
+				&& (bound < maxPoints || (bound == maxPoints && bestAction < action));
+	}
+
+	/**
+	 * Restore the arguments of a cached decision for the ith friendlyUnit.
+	 * 
+	 * @param i
+	 *            The index of the friendlyUnit we are interested in.
+	 * @param cached
+	 *            The cached decision.
+	 */
+	private void restoreDecision(int i, TranspositionTable.Entry cached) {
+		bestMoveDirections[i] = cached.direction >= 0 ? Direction.values()[cached.direction]
+				: null;
+		enemiesToShoot[i] = cached.enemy >= 0 ? enemyUnits[cached.enemy]
+				: null;
+		moveTargets[i] = cached.target >= 0 ? map.point(cached.target) : null;
+	}
+
+	/**
+	 * Size the per-unit state for the teams we are playing with.
+	 */
+	private void allocateTeamState() {
+		int numFriendly = friendlyUnits.length;
+		int numEnemy = enemyUnits.length;
+		enemiesToShoot = new GameView.Enemy[numFriendly];
+		bestMoveDirections = new Direction[numFriendly];
+		currentMoveActions = new Point[numFriendly];
+		moveTargets = new Point[numFriendly];
+		groupingSteps = new int[numFriendly];
+		groupingPathLengths = new int[numFriendly];
+		unitTiles = new int[numFriendly];
+		pickupValues = new int[numFriendly][0];
+		standingPickupPoints = new int[numFriendly];
+		canHitEnemy = new boolean[numFriendly][numEnemy];
+		shotDamageOnEnemy = new int[numEnemy];
+		shootersOfEnemy = new int[numEnemy];
+		plannedHits = new boolean[numFriendly][numEnemy];
+		plannedDamageOnEnemy = new int[numEnemy];
+		plannedShootersOfEnemy = new int[numEnemy];
+	}
+
+	/**
+	 * Determine which enemyUnits each friendlyUnit can shoot, both now and
+	 * from where it stands if it doesn't move, and total up the damage on each
+	 * enemyUnit. This is done once per turn so that scoring a shot or a move
+	 * doesn't have to go through every friendlyUnit again.
+	 */
+	private void updateShotTables() {
+		Arrays.fill(shotDamageOnEnemy, 0);
+		Arrays.fill(shootersOfEnemy, 0);
+		Arrays.fill(plannedDamageOnEnemy, 0);
+		Arrays.fill(plannedShootersOfEnemy, 0);
+		for (int k = 0; k < friendlyUnits.length; k++) {
+			int weaponDamage = friendlyUnits[k].getCurrentWeapon().getDamage();
+			for (int j = 0; j < enemyUnits.length; j++) {
+				canHitEnemy[k][j] = friendlyUnits[k]
+						.checkShotAgainstEnemy(enemyUnits[j]) == ShotResult.CAN_HIT_ENEMY;
+				if (canHitEnemy[k][j]) {
+					shotDamageOnEnemy[j] += weaponDamage;
+					shootersOfEnemy[j]++;
+				}
+			}
+			Arrays.fill(plannedHits[k], false);
+			updatePlannedHits(k, friendlyUnits[k].getPosition());
+		}
+	}
+
+	int moveNumber = 0;
+
+	/**
+	 * Commit a Phase event of the current turn, unless it is a synthetic one.
+	 */
+	private void commitPhase(FlightEvents.Phase phase, int turn,
+			String name, boolean speculative) {
+		if (!warmingUp) {
+			FlightEvents.commit(phase, turn, name, speculative);
+		}
+	}
+
+	/**
+	 * This method will get called every turn.
+	 * 
+	 * @param world
+	 *            The latest state of the world.
+	 * @param enemyUnits
+	 *            An array of all units on the enemy team. Their order won't
+	 *            change.
+	 * @param friendlyUnits
+	 *            An array of all units on your team. Their order won't change.
+	 */
+	public void doMove(World world, EnemyUnit[] enemyUnits,
+			FriendlyUnit[] friendlyUnits) {
+		engineView.update(world, enemyUnits, friendlyUnits);
+		playTurn(engineView);
+	}
+
+	/**
+	 * Give every friendlyUnit its order for a turn. The engine's turns are
+	 * played through doMove(), WarmUp's synthetic ones directly.
+	 * 
+	 * @param world
+	 *            The latest state of the world.
+	 */
+	void playTurn(GameView world) {
+		long turnStart = System.nanoTime();
+		FlightEvents.Turn turnEvent = new FlightEvents.Turn();
+		turnEvent.begin();
+		int turn = moveNumber;
+
+		this.world = world;
+		this.enemyUnits = world.getEnemyUnits();
+		this.friendlyUnits = world.getFriendlyUnits();
+
+		out.println("Team: " + friendlyUnits[0].getTeam());
+		out.println("Move number: " + moveNumber++);
+
+		boolean newTeams = currentMoveActions == null
+				|| currentMoveActions.length != friendlyUnits.length
+				|| shotDamageOnEnemy.length != enemyUnits.length;
+		if (newTeams) {
+			allocateTeamState();
+		}
+		Arrays.fill(currentMoveActions, null);
+
+		if (newTeams || map == null || !map.matches(world)) {
+			map = new GameMap(world);
+			reservations = new ReservationTable(map, friendlyUnits.length,
+					RESERVATION_HORIZON);
+			occupancy = new OccupancyGrid(map);
+			territory = new TerritoryMap(map);
+			damageField = new DamageField(map, damageKernel);
+			pathfinder = new Pathfinder(map, UNIT_OBSTACLE_PENALTY);
+			unitDistances = new int[friendlyUnits.length][];
+			unitDistanceBuffers = new int[friendlyUnits.length][map.size];
+			distanceQueue = new int[map.size];
+			utilities = new double[friendlyUnits.length][];
+			utilityRows = new double[friendlyUnits.length][world
+					.getControlPoints().length + world.getPickups().length];
+			cpValues = new int[world.getControlPoints().length];
+			zobrist = new ZobristHasher(map, HEALTH_BUCKET_SIZE, ZOBRIST_SEED);
+		}
+
+		friendlyTeam = friendlyUnits[0].getTeam();
+		enemyTeam = Team.opposite(friendlyTeam);
+		friendlyMainframes = numberOfMainframesControlled(friendlyTeam);
+		enemyMainframes = numberOfMainframesControlled(enemyTeam);
+		updateShotTables();
+
+		for (int i = 0; i < friendlyUnits.length; i++) {
+			unitTiles[i] = friendlyUnits[i].getHealth() > 0 ? map
+					.index(friendlyUnits[i].getPosition())
+					: ReservationTable.FREE;
+		}
+
+		occupancy.update(enemyUnits, friendlyUnits);
+		// Use what was built between turns wherever its assumptions held
+		TerritoryMap speculativeTerritory = null;
+		DamageField speculativeDamageField = null;
+		if (speculator != null) {
+			speculator.beginTurn(map);
+			speculativeTerritory = speculator.adoptTerritory(enemyUnits,
+					territory);
+			speculativeDamageField = speculator.adoptDamageField(enemyUnits,
+					damageField);
+		}
+		FlightEvents.Phase phase = new FlightEvents.Phase();
+		phase.begin();
+		if (speculativeTerritory != null) {
+			territory = speculativeTerritory;
+		} else {
+			territory.update(enemyUnits);
+		}
+		commitPhase(phase, turn, "territory",
+				speculativeTerritory != null);
+		phase = new FlightEvents.Phase();
+		phase.begin();
+		if (speculativeDamageField != null) {
+			damageField = speculativeDamageField;
+		} else {
+			damageField.update(world, enemyUnits);
+		}
+		commitPhase(phase, turn, "damageField",
+				speculativeDamageField != null);
+		findUnitDistances();
+		pathfinder.clearObstacles();
+		for (GameView.Enemy enemyUnit : enemyUnits) {
+			if (enemyUnit.getHealth() > 0) {
+				pathfinder.addObstacle(map.index(enemyUnit.getPosition()));
+			}
+		}
+		for (GameView.Friendly friendlyUnit : friendlyUnits) {
+			if (friendlyUnit.getHealth() > 0) {
+				pathfinder.addObstacle(map.index(friendlyUnit.getPosition()));
+			}
+		}
+		// The objectives read the stages' inputs, so those are reset first
+		for (EvaluatorPipeline pipeline : pipelines) {
+			pipeline.beginTurn(!warmingUp);
+		}
+		phase = new FlightEvents.Phase();
+		phase.begin();
+		allocateObjectives();
+		commitPhase(phase, turn, "objectives", false);
+		reservations.beginTurn(unitTiles);
+
+		transpositions.newGeneration();
+		worldHash = zobrist.hashWorld(friendlyUnits, enemyUnits, canHitEnemy,
+				world.getControlPoints(), world.getPickups());
+		committedMovesHash = 0L;
+
+		for (int i = 0; i < friendlyUnits.length; i++) {
+			doMove(i, turn);
+		}
+		if (speculator != null) {
+			speculator.publish(map, damageField, friendlyUnits,
+					currentMoveActions, enemyUnits);
+		}
+
+		if (turnStats != null) {
+			out.println("Transposition table: "
+					+ transpositions.hits() + "/" + transpositions.probes()
+					+ " hits (" + (int) (transpositions.hitRate() * 100)
+					+ "%)");
+			out.println("Pruned evaluations: " + prunedEvaluations
+					+ "/" + (prunedEvaluations + evaluations));
+			for (EvaluatorPipeline pipeline : pipelines) {
+				pipeline.printStatistics();
+			}
+			if (speculator != null) {
+				speculator.printStatistics();
+			}
+		}
+		if (!warmingUp && turnEvent.shouldCommit()) {
+			turnEvent.turn = turn;
+			turnEvent.mapWidth = map.width;
+			turnEvent.mapHeight = map.height;
+			turnEvent.friendlyUnits = numberOfLivingUnits(friendlyUnits);
+			turnEvent.enemyUnits = numberOfLivingUnits(enemyUnits);
+			turnEvent.controlPoints = world.getControlPoints().length;
+			turnEvent.pickups = world.getPickups().length;
+			turnEvent.commit();
+		}
+		long turnNanos = System.nanoTime() - turnStart;
+		out.println("Turn " + turn + " took " + turnNanos / 1000
+				+ " us");
+		if (turnStats != null) {
+			turnStats.record(turn, friendlyUnits.length, enemyUnits.length,
+					map, turnNanos);
+		}
+	}
+}
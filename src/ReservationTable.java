@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+ * Space-time reservation table for friendly units. Step 0 holds the tile each
+ * unit stands on at the start of the turn, and steps 1..horizon hold the tiles
+ * the unit plans to occupy after each of the following turns. Units consult the
+ * table before moving so that they never claim a tile another unit has
+ * reserved for the same step, and never swap places with another unit.
+ * <p>
+ * Plans carry over between turns: at the start of every turn each plan is
+ * shifted by one step. If a unit is not where its plan said it would be, its
+ * move failed, the plan is dropped, and the tile it failed to move onto stays
+ * blocked for that unit until it completes a move again.
+ */
+final class ReservationTable {
+
+	static final int FREE = -1;
+
+	private final int horizon;
+	// owners[step][tile] is the unit that reserved the tile for that step
+	private final int[][] owners;
+	// plans[unit][step] is the tile the unit reserved for that step
+	private final int[][] plans;
+	// The tile each unit last failed to move onto, or FREE
+	private final int[] blocked;
+
+	ReservationTable(GameMap map, int numUnits, int horizon) {
+		this.horizon = horizon;
+		this.owners = new int[horizon + 1][map.size];
+		this.plans = new int[numUnits][horizon + 1];
+		this.blocked = new int[numUnits];
+		for (int[] stepOwners : owners) {
+			Arrays.fill(stepOwners, FREE);
+		}
+		for (int[] plan : plans) {
+			Arrays.fill(plan, FREE);
+		}
+		Arrays.fill(blocked, FREE);
+	}
+
+	/**
+	 * Advance the table by one turn.
+	 *
+	 * @param positions
+	 *            The tile each unit stands on now, or FREE if it is dead.
+	 */
+	void beginTurn(int[] positions) {
+		for (int u = 0; u < plans.length; u++) {
+			for (int s = 0; s <= horizon; s++) {
+				unreserve(u, s);
+			}
+		}
+		for (int u = 0; u < plans.length; u++) {
+			int[] plan = plans[u];
+			if (positions[u] == FREE) {
+				Arrays.fill(plan, FREE);
+				blocked[u] = FREE;
+				continue;
+			}
+			boolean plannedMove = plan[1] != FREE && plan[1] != plan[0];
+			if (plannedMove && plan[1] == positions[u]) {
+				blocked[u] = FREE;
+			} else if (plannedMove) {
+				// The move didn't happen, so don't try it again and forget
+				// the rest of the plan
+				blocked[u] = plan[1];
+				Arrays.fill(plan, FREE);
+			}
+			System.arraycopy(plan, 1, plan, 0, horizon);
+			plan[horizon] = FREE;
+			plan[0] = positions[u];
+			for (int s = 0; s <= horizon; s++) {
+				if (plan[s] != FREE && owners[s][plan[s]] == FREE) {
+					owners[s][plan[s]] = u;
+				} else {
+					// Another unit got there first, drop the rest of the plan
+					for (; s <= horizon; s++) {
+						plan[s] = FREE;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determine whether a unit may move between two adjacent tiles this turn.
+	 *
+	 * @param unit
+	 *            The index of the unit.
+	 * @param from
+	 *            The tile the unit stands on.
+	 * @param to
+	 *            The tile the unit wants to move onto.
+	 * @return False if the tile is reserved by another unit for the next step,
+	 *         if the move would swap places with another unit, or if the unit
+	 *         recently failed to move onto that tile.
+	 */
+	boolean canMove(int unit, int from, int to) {
+		if (blocked[unit] == to) {
+			return false;
+		}
+		int nextOwner = owners[1][to];
+		if (nextOwner != FREE && nextOwner != unit) {
+			return false;
+		}
+		int currentOwner = owners[0][to];
+		return currentOwner == FREE || currentOwner == unit
+				|| owners[1][from] != currentOwner;
+	}
+
+	/**
+	 * Replace the future plan of a unit with a path. The path is truncated at
+	 * the first step that is already reserved by another unit.
+	 *
+	 * @param unit
+	 *            The index of the unit.
+	 * @param path
+	 *            The tiles the unit plans to occupy after each of the next
+	 *            turns.
+	 * @param length
+	 *            The number of tiles of path to use.
+	 */
+	void reservePath(int unit, int[] path, int length) {
+		int[] plan = plans[unit];
+		releaseFuture(unit);
+		for (int s = 1; s <= Math.min(length, horizon); s++) {
+			int tile = path[s - 1];
+			if (owners[s][tile] != FREE) {
+				break;
+			}
+			owners[s][tile] = unit;
+			plan[s] = tile;
+		}
+	}
+
+	/**
+	 * Replace the future plan of a unit with staying where it is for the next
+	 * turn.
+	 */
+	void hold(int unit) {
+		int tile = plans[unit][0];
+		releaseFuture(unit);
+		if (tile != FREE && owners[1][tile] == FREE) {
+			owners[1][tile] = unit;
+			plans[unit][1] = tile;
+		}
+	}
+
+	/**
+	 * @return A hash of every plan and blocked tile in the table, so that
+	 *         decisions that depend on the reservations can be cached.
+	 */
+	long signature() {
+		long hash = 0L;
+		for (int u = 0; u < plans.length; u++) {
+			for (int s = 1; s <= horizon; s++) {
+				if (plans[u][s] != FREE) {
+					hash ^= ZobristHasher.mix(((long) u << 40)
+							+ ((long) s << 32) + plans[u][s]);
+				}
+			}
+			if (blocked[u] != FREE) {
+				hash ^= ZobristHasher.mix(((long) u << 40) + blocked[u]
+						+ 0x9e3779b97f4a7c15L);
+			}
+		}
+		return hash;
+	}
+
+	int horizon() {
+		return horizon;
+	}
+
+	private void releaseFuture(int unit) {
+		for (int s = 1; s <= horizon; s++) {
+			unreserve(unit, s);
+			plans[unit][s] = FREE;
+		}
+	}
+
+	private void unreserve(int unit, int step) {
+		int tile = plans[unit][step];
+		if (tile != FREE && owners[step][tile] == unit) {
+			owners[step][tile] = FREE;
+		}
+	}
+}
@@ -0,0 +1,16 @@
+/**
+ * Plain loop implementation of DamageKernel, used unless the vector one is
+ * asked for.
+ */
+final class ScalarDamageKernel implements DamageKernel {
+
+	@Override
+	public void accumulate(int[] damage, int[] shooters, int offset,
+			int[] mask, int maskOffset, int length, int weaponDamage) {
+		for (int k = 0; k < length; k++) {
+			int m = mask[maskOffset + k];
+			damage[offset + k] += m * weaponDamage;
+			shooters[offset + k] += m;
+		}
+	}
+}
@@ -0,0 +1,369 @@
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import com.orbischallenge.game.engine.Point;
+
+/**
+ * Uses the time between turns to build next turn's start-of-turn structures
+ * on a background thread, assuming every move we committed succeeds and the
+ * enemies hold their positions:
+ * <ul>
+ * <li>the territory map,</li>
+ * <li>the damage field, as long as every visibility mask it needs is already
+ * cached,</li>
+ * <li>for each of our units, the number of moves from its next position to
+ * every tile, which the pathfinder uses as its heuristic.</li>
+ * </ul>
+ * At the start of the next turn each structure is checked against the real
+ * positions and weapons, and used only if the assumptions it relies on held.
+ * <p>
+ * The state of a turn is handed over in one of two snapshot buffers, so the
+ * main thread can write one while the worker reads the other. A buffer is
+ * versioned like a seqlock: the version is odd while the main thread writes
+ * it, and the worker throws its results away if the version changed while
+ * it was reading. Nothing ever blocks the main thread.
+ */
+final class Speculator {
+
+	/**
+	 * The state one turn was left in, and the structures built from it.
+	 */
+	private static final class Snapshot {
+		final AtomicInteger version = new AtomicInteger();
+		// The version the results below were built from, or -1
+		volatile int doneVersion = -1;
+
+		// Written by the main thread
+		GameMap map;
+		DamageField damageTemplate;
+		// Where each friendlyUnit and enemyUnit will be next turn if the
+		// assumptions hold, or -1 if it is dead
+		int[] friendlyTiles = new int[0];
+		int[] enemyTiles = new int[0];
+		int[] enemyRanges = new int[0];
+		int[] enemyDamages = new int[0];
+
+		// Written by the worker
+		TerritoryMap territory;
+		DamageField damage;
+		boolean damageBuilt;
+		int[][] distances = new int[0][];
+		int[] queue = new int[0];
+		long territoryNanos;
+		long damageNanos;
+		long[] distanceNanos = new long[0];
+	}
+
+	private final Snapshot[] buffers = { new Snapshot(), new Snapshot() };
+	private final AtomicReference<Snapshot> latest = new AtomicReference<>();
+	private final Thread worker;
+
+	// The snapshot adopted for the current turn, if it was finished in time
+	private Snapshot current;
+
+	// Totals over the game
+	private long checks;
+	private long hits;
+	private long savedNanos;
+	// This turn's
+	private int turnChecks;
+	private int turnHits;
+	private long turnSavedNanos;
+
+	Speculator() {
+		worker = new Thread(this::work, "ctz-speculator");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Hand the state we leave the turn in to the worker.
+	 *
+	 * @param map
+	 *            The current map.
+	 * @param damageTemplate
+	 *            The current damage field, whose visibility masks the worker
+	 *            may use.
+	 * @param friendlyUnits
+	 *            Our units.
+	 * @param nextPositions
+	 *            Where each friendlyUnit moves to this turn, or null if it
+	 *            doesn't move.
+	 * @param enemyUnits
+	 *            The enemy units.
+	 */
+	void publish(GameMap map, DamageField damageTemplate,
+			GameView.Friendly[] friendlyUnits, Point[] nextPositions,
+			GameView.Enemy[] enemyUnits) {
+		Snapshot snapshot = latest.get() == buffers[0] ? buffers[1]
+				: buffers[0];
+		snapshot.version.incrementAndGet();
+		snapshot.map = map;
+		snapshot.damageTemplate = damageTemplate;
+		if (snapshot.friendlyTiles.length != friendlyUnits.length) {
+			snapshot.friendlyTiles = new int[friendlyUnits.length];
+		}
+		for (int i = 0; i < friendlyUnits.length; i++) {
+			Point next = nextPositions[i] != null ? nextPositions[i]
+					: friendlyUnits[i].getPosition();
+			snapshot.friendlyTiles[i] = friendlyUnits[i].getHealth() > 0 ? map
+					.index(next) : -1;
+		}
+		if (snapshot.enemyTiles.length != enemyUnits.length) {
+			snapshot.enemyTiles = new int[enemyUnits.length];
+			snapshot.enemyRanges = new int[enemyUnits.length];
+			snapshot.enemyDamages = new int[enemyUnits.length];
+		}
+		writeEnemies(map, enemyUnits, snapshot.enemyTiles,
+				snapshot.enemyRanges, snapshot.enemyDamages);
+		snapshot.version.incrementAndGet();
+		latest.set(snapshot);
+		LockSupport.unpark(worker);
+	}
+
+	/**
+	 * Pick up what the worker built since the last turn, if it finished.
+	 *
+	 * @param map
+	 *            The current map.
+	 */
+	void beginTurn(GameMap map) {
+		turnChecks = 0;
+		turnHits = 0;
+		turnSavedNanos = 0;
+		Snapshot snapshot = latest.get();
+		current = snapshot != null && snapshot.map == map
+				&& snapshot.doneVersion == snapshot.version.get() ? snapshot
+				: null;
+	}
+
+	/**
+	 * Swap in the speculative territory map if every enemy is where it
+	 * assumed.
+	 *
+	 * @param enemyUnits
+	 *            The enemy units.
+	 * @param replaced
+	 *            The territory map that would otherwise be updated. It is
+	 *            given to the worker to reuse.
+	 * @return The speculative territory map, or null if it can't be used.
+	 */
+	TerritoryMap adoptTerritory(GameView.Enemy[] enemyUnits,
+			TerritoryMap replaced) {
+		boolean hit = current != null && current.territory != null
+				&& enemiesHeld(enemyUnits, false);
+		record(hit, hit ? current.territoryNanos : 0);
+		if (!hit) {
+			return null;
+		}
+		TerritoryMap territory = current.territory;
+		current.territory = replaced;
+		return territory;
+	}
+
+	/**
+	 * Swap in the speculative damage field if every enemy is where it
+	 * assumed with the same weapon.
+	 *
+	 * @param enemyUnits
+	 *            The enemy units.
+	 * @param replaced
+	 *            The damage field that would otherwise be updated. It is
+	 *            given to the worker to reuse.
+	 * @return The speculative damage field, or null if it can't be used.
+	 */
+	DamageField adoptDamageField(GameView.Enemy[] enemyUnits,
+			DamageField replaced) {
+		boolean hit = current != null && current.damageBuilt
+				&& enemiesHeld(enemyUnits, true);
+		record(hit, hit ? current.damageNanos : 0);
+		if (!hit) {
+			return null;
+		}
+		DamageField damage = current.damage;
+		current.damage = replaced;
+		current.damageBuilt = false;
+		return damage;
+	}
+
+	/**
+	 * @param unit
+	 *            The index of a friendlyUnit.
+	 * @param tile
+	 *            The tile it stands on.
+	 * @return The number of moves from the tile to every other tile, if it
+	 *         was built for that unit on that tile, or null. Each call counts
+	 *         as a check, so ask once per unit per turn.
+	 */
+	int[] distancesFrom(int unit, int tile) {
+		boolean hit = current != null && unit < current.distances.length
+				&& current.friendlyTiles[unit] == tile;
+		record(hit, hit ? current.distanceNanos[unit] : 0);
+		return hit ? current.distances[unit] : null;
+	}
+
+	/**
+	 * Print the hit rate of this turn and the game, and how much main-thread
+	 * time the structures built ahead saved.
+	 */
+	void printStatistics() {
+		System.out.println("Speculation: " + turnHits + "/" + turnChecks
+				+ " hits this turn, saved " + turnSavedNanos / 1000
+				+ " us; " + hits + "/" + checks + " hits ("
+				+ (checks == 0 ? 0 : (int) (hits * 100 / checks))
+				+ "%), saved " + savedNanos / 1000 + " us in total");
+	}
+
+	private void record(boolean hit, long nanos) {
+		checks++;
+		turnChecks++;
+		if (hit) {
+			hits++;
+			turnHits++;
+			savedNanos += nanos;
+			turnSavedNanos += nanos;
+		}
+	}
+
+	/**
+	 * Determine whether every enemyUnit is still where the current snapshot
+	 * put it and, if weapons matter, carries the same weapon.
+	 */
+	private boolean enemiesHeld(GameView.Enemy[] enemyUnits, boolean weapons) {
+		if (current.enemyTiles.length != enemyUnits.length) {
+			return false;
+		}
+		for (int j = 0; j < enemyUnits.length; j++) {
+			boolean alive = enemyUnits[j].getHealth() > 0;
+			if (!alive) {
+				if (current.enemyTiles[j] != -1) {
+					return false;
+				}
+				continue;
+			}
+			if (current.enemyTiles[j] != current.map.index(enemyUnits[j]
+					.getPosition())) {
+				return false;
+			}
+			if (weapons
+					&& (current.enemyRanges[j] != enemyUnits[j]
+							.getCurrentWeapon().getRange() || current.enemyDamages[j] != enemyUnits[j]
+							.getCurrentWeapon().getDamage())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void writeEnemies(GameMap map, GameView.Enemy[] enemyUnits,
+			int[] tiles, int[] ranges, int[] damages) {
+		for (int j = 0; j < enemyUnits.length; j++) {
+			if (enemyUnits[j].getHealth() > 0) {
+				tiles[j] = map.index(enemyUnits[j].getPosition());
+				ranges[j] = enemyUnits[j].getCurrentWeapon().getRange();
+				damages[j] = enemyUnits[j].getCurrentWeapon().getDamage();
+			} else {
+				tiles[j] = -1;
+			}
+		}
+	}
+
+	/**
+	 * The worker: build the structures for each new snapshot, then wait for
+	 * the next one.
+	 */
+	private void work() {
+		int builtVersion = -1;
+		Snapshot built = null;
+		while (true) {
+			Snapshot snapshot = latest.get();
+			int version = snapshot == null ? -1 : snapshot.version.get();
+			if (snapshot == null || (version & 1) != 0
+					|| (snapshot == built && version == builtVersion)) {
+				LockSupport.park(this);
+				continue;
+			}
+			built = snapshot;
+			builtVersion = version;
+			try {
+				build(snapshot);
+			} catch (RuntimeException e) {
+				// A torn read of a snapshot the main thread rewrote can throw,
+				// and is thrown away below. Anything else is a bug.
+				VarHandle.acquireFence();
+				if (snapshot.version.get() == version) {
+					System.out.println("Speculation failed: " + e);
+					e.printStackTrace(System.out);
+				}
+				continue;
+			}
+			// Keep the reads of the snapshot from moving past the version
+			// check
+			VarHandle.acquireFence();
+			if (snapshot.version.get() == version) {
+				snapshot.doneVersion = version;
+			}
+		}
+	}
+
+	private void build(Snapshot snapshot) {
+		GameMap map = snapshot.map;
+		int[] enemyTiles = living(snapshot.enemyTiles);
+
+		long start = System.nanoTime();
+		if (snapshot.territory == null || !snapshot.territory.matches(map)) {
+			snapshot.territory = new TerritoryMap(map);
+		}
+		snapshot.territory.update(enemyTiles);
+		snapshot.territoryNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		if (snapshot.damage == null || !snapshot.damage.matches(map)) {
+			snapshot.damage = snapshot.damageTemplate.sibling();
+		}
+		int[] ranges = new int[enemyTiles.length];
+		int[] damages = new int[enemyTiles.length];
+		for (int j = 0, e = 0; j < snapshot.enemyTiles.length; j++) {
+			if (snapshot.enemyTiles[j] >= 0) {
+				ranges[e] = snapshot.enemyRanges[j];
+				damages[e++] = snapshot.enemyDamages[j];
+			}
+		}
+		snapshot.damageBuilt = snapshot.damage.update(enemyTiles, ranges,
+				damages, enemyTiles.length);
+		snapshot.damageNanos = System.nanoTime() - start;
+
+		if (snapshot.distances.length != snapshot.friendlyTiles.length
+				|| snapshot.queue.length != map.size) {
+			snapshot.distances = new int[snapshot.friendlyTiles.length][map.size];
+			snapshot.queue = new int[map.size];
+			snapshot.distanceNanos = new long[snapshot.friendlyTiles.length];
+		}
+		for (int i = 0; i < snapshot.friendlyTiles.length; i++) {
+			if (snapshot.friendlyTiles[i] >= 0) {
+				start = System.nanoTime();
+				map.distances(snapshot.friendlyTiles[i],
+						snapshot.distances[i], snapshot.queue);
+				snapshot.distanceNanos[i] = System.nanoTime() - start;
+			}
+		}
+	}
+
+	private static int[] living(int[] tiles) {
+		int count = 0;
+		for (int tile : tiles) {
+			if (tile >= 0) {
+				count++;
+			}
+		}
+		int[] living = new int[count];
+		for (int t = 0, l = 0; t < tiles.length; t++) {
+			if (tiles[t] >= 0) {
+				living[l++] = tiles[t];
+			}
+		}
+		return living;
+	}
+}
@@ -0,0 +1,168 @@
+import java.util.Arrays;
+
+import com.orbischallenge.game.engine.Point;
+
+/**
+ * Labels every tile with how many moves the closest living enemy needs to
+ * reach it, using one multi-source breadth-first search per turn. Control
+ * point scoring reads whether an enemy cp is guarded from it instead of
+ * asking for the path length from every enemy.
+ * <p>
+ * Where the individual enemies are is also kept, so that the enemies close to
+ * a tile can be counted with a breadth-first search bounded to a few moves.
+ */
+final class TerritoryMap {
+
+	static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private final GameMap map;
+	private final int[] enemyDistances;
+	private final int[] queue;
+
+	// The number of living enemies on each tile, and the tiles they are on
+	private final int[] enemiesOn;
+	private int[] enemyTiles = new int[0];
+	private int enemyCount;
+
+	// The bounded search of enemiesNear(): the distance to each tile, valid
+	// when nearStamps[t] == nearStamp
+	private final int[] nearDistances;
+	private final int[] nearStamps;
+	private int nearStamp;
+
+	TerritoryMap(GameMap map) {
+		this.map = map;
+		this.enemyDistances = new int[map.size];
+		this.queue = new int[map.size];
+		this.enemiesOn = new int[map.size];
+		this.nearDistances = new int[map.size];
+		this.nearStamps = new int[map.size];
+	}
+
+	/**
+	 * @return True if this territory map was made for the map.
+	 */
+	boolean matches(GameMap map) {
+		return this.map == map;
+	}
+
+	/**
+	 * Recompute the enemies' distances from their positions at the start of a
+	 * turn.
+	 */
+	void update(GameView.Enemy[] enemyUnits) {
+		int sources = 0;
+		for (GameView.Enemy unit : enemyUnits) {
+			if (unit.getHealth() > 0) {
+				queue[sources++] = map.index(unit.getPosition());
+			}
+		}
+		placeEnemies(queue, sources);
+		search(enemyDistances, sources);
+	}
+
+	/**
+	 * Recompute the enemies' distances from the tiles the living ones stand
+	 * on.
+	 */
+	void update(int[] enemyTiles) {
+		placeEnemies(enemyTiles, enemyTiles.length);
+		System.arraycopy(enemyTiles, 0, queue, 0, enemyTiles.length);
+		search(enemyDistances, enemyTiles.length);
+	}
+
+	/**
+	 * @return The number of moves the closest living enemyUnit needs to reach
+	 *         the point, or UNREACHABLE.
+	 */
+	int enemyDistance(Point p) {
+		return enemyDistances[map.index(p)];
+	}
+
+	/**
+	 * Count the living enemyUnits that can reach a point in at most range
+	 * moves.
+	 * 
+	 * @param p
+	 *            The point we are interested in.
+	 * @param range
+	 *            The most moves an enemy may need.
+	 * @param counts
+	 *            Filled with the number of enemies exactly d moves away at
+	 *            counts[d], for d from 0 to range.
+	 */
+	void enemiesNear(Point p, int range, int[] counts) {
+		Arrays.fill(counts, 0, range + 1, 0);
+		int tile = map.index(p);
+		if (enemyDistances[tile] > range) {
+			return;
+		}
+		nearStamp++;
+		nearStamps[tile] = nearStamp;
+		nearDistances[tile] = 0;
+		queue[0] = tile;
+		int head = 0;
+		int tail = 1;
+		int remaining = enemyCount;
+		while (head < tail && remaining > 0) {
+			tile = queue[head++];
+			int distance = nearDistances[tile];
+			if (enemiesOn[tile] > 0) {
+				counts[distance] += enemiesOn[tile];
+				remaining -= enemiesOn[tile];
+			}
+			if (distance == range) {
+				continue;
+			}
+			for (int neighbour : map.neighbours(tile)) {
+				if (nearStamps[neighbour] != nearStamp) {
+					nearStamps[neighbour] = nearStamp;
+					nearDistances[neighbour] = distance + 1;
+					queue[tail++] = neighbour;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remember which tiles the living enemies stand on.
+	 */
+	private void placeEnemies(int[] tiles, int count) {
+		for (int e = 0; e < enemyCount; e++) {
+			enemiesOn[enemyTiles[e]] = 0;
+		}
+		if (enemyTiles.length < count) {
+			enemyTiles = new int[count];
+		}
+		System.arraycopy(tiles, 0, enemyTiles, 0, count);
+		enemyCount = count;
+		for (int e = 0; e < count; e++) {
+			enemiesOn[tiles[e]]++;
+		}
+	}
+
+	/**
+	 * Breadth-first search from the first sources tiles in the queue.
+	 */
+	private void search(int[] distances, int sources) {
+		Arrays.fill(distances, UNREACHABLE);
+		int tail = 0;
+		for (int q = 0; q < sources; q++) {
+			if (distances[queue[q]] != 0) {
+				distances[queue[q]] = 0;
+				queue[tail++] = queue[q];
+			}
+		}
+		int head = 0;
+		while (head < tail) {
+			int tile = queue[head++];
+			int next = distances[tile] + 1;
+			for (int neighbour : map.neighbours(tile)) {
+				if (distances[neighbour] == UNREACHABLE) {
+					distances[neighbour] = next;
+					queue[tail++] = neighbour;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,193 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, lock-free cache of evaluated decisions keyed by Zobrist hash.
+ * <p>
+ * Each entry holds the four action scores, which actions were scored, the
+ * chosen action and its arguments, the search depth the entry was produced
+ * at and the turn it was written in. Entries are stored as four data words
+ * plus a check word that is the XOR of the key and the data words, so a
+ * reader that races with a writer sees a mismatched check word and treats the
+ * entry as a miss instead of returning torn data.
+ * <p>
+ * The data words are the four scores, two to a word, then the meta word and
+ * the target word:
+ * <ul>
+ * <li>meta: action in bits 0-2, evaluated in bits 3-6, direction + 1 in bits
+ * 7-14, depth in bits 15-30 and generation in bits 31-46</li>
+ * <li>target: target + 1 in the low 32 bits and enemy + 1 in the high 32
+ * bits</li>
+ * </ul>
+ * Enemy and target keep a whole int each. Depth must fit in 16 bits; the
+ * generation wraps at 2^16 turns, which only matters to DEPTH_PREFERRED
+ * comparing it with the current one.
+ */
+final class TranspositionTable {
+
+	/**
+	 * Decides whether a new entry may overwrite the one occupying its slot.
+	 */
+	enum ReplacementPolicy {
+		// Always overwrite
+		ALWAYS,
+		// Keep entries from deeper searches made this turn
+		DEPTH_PREFERRED
+	}
+
+	/**
+	 * Mutable holder for the contents of an entry, reused between probes.
+	 */
+	static final class Entry {
+		int movePoints;
+		int shootPoints;
+		int shieldPoints;
+		int pickupPoints;
+		// Bit n is set if the action with ordinal n was scored rather than
+		// pruned or unavailable
+		int evaluated;
+		Action action;
+		// The ordinal of the move direction, or -1
+		int direction;
+		// The index of the enemy to shoot, or -1
+		int enemy;
+		// The tile the unit is heading towards, or -1
+		int target;
+		int depth;
+	}
+
+	private static final int WORDS_PER_ENTRY = 5;
+	private static final int EVALUATED_SHIFT = 3;
+	private static final int DIRECTION_SHIFT = 7;
+	private static final int DEPTH_SHIFT = 15;
+	private static final int GENERATION_SHIFT = 31;
+	private static final int EVALUATED_MASK = 0xf;
+	private static final int DIRECTION_MASK = 0xff;
+	private static final int DEPTH_MASK = 0xffff;
+	private static final int GENERATION_MASK = 0xffff;
+	private static final Action[] ACTIONS = Action.values();
+
+	private final AtomicLongArray table;
+	private final int mask;
+	private final ReplacementPolicy policy;
+	private final LongAdder probes = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private volatile int generation;
+
+	/**
+	 * @param bits
+	 *            The table holds 2^bits entries.
+	 */
+	TranspositionTable(int bits, ReplacementPolicy policy) {
+		this.table = new AtomicLongArray(WORDS_PER_ENTRY << bits);
+		this.mask = (1 << bits) - 1;
+		this.policy = policy;
+	}
+
+	/**
+	 * Start a new turn. Entries from earlier turns remain valid but can always
+	 * be replaced.
+	 */
+	void newGeneration() {
+		generation = (generation + 1) & GENERATION_MASK;
+	}
+
+	/**
+	 * Look up a key.
+	 *
+	 * @param key
+	 *            The hash of the state we are interested in.
+	 * @param out
+	 *            Filled with the entry on a hit.
+	 * @return True on a hit, false otherwise.
+	 */
+	boolean probe(long key, Entry out) {
+		probes.increment();
+		int base = slot(key);
+		long check = table.get(base);
+		long scores0 = table.get(base + 1);
+		long scores1 = table.get(base + 2);
+		long meta = table.get(base + 3);
+		long extra = table.get(base + 4);
+		if ((check ^ scores0 ^ scores1 ^ meta ^ extra) != key
+				|| (check | scores0 | scores1 | meta | extra) == 0L) {
+			return false;
+		}
+		hits.increment();
+		out.movePoints = (int) (scores0 >>> 32);
+		out.shootPoints = (int) scores0;
+		out.shieldPoints = (int) (scores1 >>> 32);
+		out.pickupPoints = (int) scores1;
+		out.action = ACTIONS[(int) (meta & 0x7)];
+		out.evaluated = (int) ((meta >>> EVALUATED_SHIFT) & EVALUATED_MASK);
+		out.direction = (int) ((meta >>> DIRECTION_SHIFT) & DIRECTION_MASK) - 1;
+		out.depth = (int) ((meta >>> DEPTH_SHIFT) & DEPTH_MASK);
+		out.target = (int) extra - 1;
+		out.enemy = (int) (extra >>> 32) - 1;
+		return true;
+	}
+
+	/**
+	 * Store an entry, subject to the replacement policy.
+	 *
+	 * @param key
+	 *            The hash of the state the entry was evaluated in.
+	 * @param entry
+	 *            The contents to store.
+	 */
+	void store(long key, Entry entry) {
+		int base = slot(key);
+		if (policy == ReplacementPolicy.DEPTH_PREFERRED) {
+			long meta = table.get(base + 3);
+			int storedDepth = (int) ((meta >>> DEPTH_SHIFT) & DEPTH_MASK);
+			int storedGeneration = (int) ((meta >>> GENERATION_SHIFT)
+					& GENERATION_MASK);
+			if (meta != 0L && storedGeneration == generation
+					&& storedDepth > entry.depth) {
+				return;
+			}
+		}
+		long scores0 = ((long) entry.movePoints << 32)
+				| (entry.shootPoints & 0xffffffffL);
+		long scores1 = ((long) entry.shieldPoints << 32)
+				| (entry.pickupPoints & 0xffffffffL);
+		assert entry.direction + 1 >= 0
+				&& entry.direction + 1 <= DIRECTION_MASK : entry.direction;
+		assert entry.depth >= 0 && entry.depth <= DEPTH_MASK : entry.depth;
+		assert (entry.evaluated & ~EVALUATED_MASK) == 0 : entry.evaluated;
+		long meta = entry.action.ordinal()
+				| ((long) entry.evaluated << EVALUATED_SHIFT)
+				| ((long) (entry.direction + 1) << DIRECTION_SHIFT)
+				| ((long) entry.depth << DEPTH_SHIFT)
+				| ((long) generation << GENERATION_SHIFT);
+		long extra = ((entry.target + 1) & 0xffffffffL)
+				| ((long) (entry.enemy + 1) << 32);
+		// Invalidate the entry while it is being written
+		table.set(base, 0L);
+		table.set(base + 1, scores0);
+		table.set(base + 2, scores1);
+		table.set(base + 3, meta);
+		table.set(base + 4, extra);
+		table.set(base, key ^ scores0 ^ scores1 ^ meta ^ extra);
+	}
+
+	long probes() {
+		return probes.sum();
+	}
+
+	long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The fraction of probes that were hits, or 0 if there were none.
+	 */
+	double hitRate() {
+		long p = probes.sum();
+		return p == 0 ? 0 : (double) hits.sum() / p;
+	}
+
+	private int slot(long key) {
+		return ((int) (key ^ (key >>> 32)) & mask) * WORDS_PER_ENTRY;
+	}
+}
@@ -0,0 +1,59 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Appends one CSV line per turn with the team sizes, the map size and how long
+ * the turn took, so that turn latency can be charted against unit count and
+ * map size. Enabled by running with -Dctz.stats=&lt;file&gt;.
+ */
+final class TurnStats {
+
+	static final String HEADER = "turn,friendly_units,enemy_units,width,height,tiles,turn_us";
+
+	private final PrintWriter out;
+
+	private TurnStats(PrintWriter out) {
+		this.out = out;
+	}
+
+	/**
+	 * @return Whether stats are enabled with -Dctz.stats.
+	 */
+	static boolean enabled() {
+		return System.getProperty("ctz.stats") != null;
+	}
+
+	/**
+	 * Open the file named by the ctz.stats system property for appending.
+	 *
+	 * @return The recorder, or null if stats are disabled or the file can't be
+	 *         opened.
+	 */
+	static TurnStats fromSystemProperty() {
+		String path = System.getProperty("ctz.stats");
+		if (path == null) {
+			return null;
+		}
+		try {
+			boolean exists = new File(path).length() > 0;
+			PrintWriter out = new PrintWriter(new FileWriter(path, true), true);
+			if (!exists) {
+				out.println(HEADER);
+			}
+			return new TurnStats(out);
+		} catch (IOException e) {
+			System.out.println("Can't write turn stats to " + path + ": "
+					+ e.getMessage());
+			return null;
+		}
+	}
+
+	void record(int turn, int friendlyUnits, int enemyUnits, GameMap map,
+			long turnNanos) {
+		out.println(turn + "," + friendlyUnits + "," + enemyUnits + ","
+				+ map.width + "," + map.height + "," + map.size + ","
+				+ turnNanos / 1000);
+	}
+}
@@ -0,0 +1,38 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * DamageKernel that processes several tiles per instruction with the widest
+ * integer vector the CPU supports, up to 256 bits. Needs --add-modules
+ * jdk.incubator.vector both to compile and to run; DamageKernel.create() only
+ * loads this class when the module is present.
+ * <p>
+ * Mask rows are short, 11 tiles for a range of 5, so a 512-bit vector of 16
+ * ints would leave every row to the scalar tail loop. 256 bits still covers 8
+ * tiles of such a row at once.
+ */
+final class VectorDamageKernel implements DamageKernel {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED
+			.vectorBitSize() > 256 ? IntVector.SPECIES_256
+			: IntVector.SPECIES_PREFERRED;
+
+	@Override
+	public void accumulate(int[] damage, int[] shooters, int offset,
+			int[] mask, int maskOffset, int length, int weaponDamage) {
+		int k = 0;
+		int bound = SPECIES.loopBound(length);
+		for (; k < bound; k += SPECIES.length()) {
+			IntVector m = IntVector.fromArray(SPECIES, mask, maskOffset + k);
+			IntVector.fromArray(SPECIES, damage, offset + k)
+					.add(m.mul(weaponDamage)).intoArray(damage, offset + k);
+			IntVector.fromArray(SPECIES, shooters, offset + k).add(m)
+					.intoArray(shooters, offset + k);
+		}
+		for (; k < length; k++) {
+			int m = mask[maskOffset + k];
+			damage[offset + k] += m * weaponDamage;
+			shooters[offset + k] += m;
+		}
+	}
+}
@@ -0,0 +1,659 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import com.orbischallenge.ctz.objects.ControlPoint;
+import com.orbischallenge.ctz.objects.EnemyUnit;
+import com.orbischallenge.ctz.objects.FriendlyUnit;
+import com.orbischallenge.ctz.objects.Pickup;
+import com.orbischallenge.ctz.objects.World;
+import com.orbischallenge.ctz.objects.enums.ActivateShieldResult;
+import com.orbischallenge.ctz.objects.enums.Direction;
+import com.orbischallenge.ctz.objects.enums.MoveResult;
+import com.orbischallenge.ctz.objects.enums.PickupResult;
+import com.orbischallenge.ctz.objects.enums.PickupType;
+import com.orbischallenge.ctz.objects.enums.ShotResult;
+import com.orbischallenge.ctz.objects.enums.Team;
+import com.orbischallenge.ctz.objects.enums.TileType;
+import com.orbischallenge.ctz.objects.enums.WeaponType;
+import com.orbischallenge.game.engine.Point;
+
+/**
+ * Plays synthetic games with a PlayerAI while the game is being set up, so
+ * that the decision code is compiled before turn 0.
+ * <p>
+ * The engine doesn't let us build a World of our own, so a synthetic game is
+ * a GameView, played through PlayerAI.playTurn() just as the engine's turns
+ * are through doMove(). Its rules only need to be close enough to the
+ * engine's to send the PlayerAI down the same paths: the enemies shoot what
+ * they can and wander otherwise, and path lengths are counted as if there
+ * were no walls. The engine classes are loaded and initialized up front.
+ * <p>
+ * The compiled code outlives the PlayerAI that asked for it, so only the
+ * first warm-up in a JVM does anything.
+ */
+final class WarmUp {
+
+	// Classes the first turn initializes
+	private static final Class<?>[] CLASSES = { World.class,
+			EnemyUnit.class, FriendlyUnit.class, ControlPoint.class,
+			Pickup.class, Point.class, Direction.class, PickupType.class,
+			WeaponType.class, Team.class, TileType.class, MoveResult.class,
+			ShotResult.class, PickupResult.class, ActivateShieldResult.class,
+			FlightEvents.Turn.class, FlightEvents.Phase.class,
+			FlightEvents.Decision.class, FlightEvents.Stage.class };
+
+	// Past this many turns the turn time stops improving, once C2 has
+	// compiled the pipeline
+	private static final int MAX_TURNS = 4000;
+	// Start a new synthetic game this often, so the units don't settle
+	private static final int TURNS_PER_GAME = 50;
+
+	private static final int MAP_WIDTH = 40;
+	private static final int MAP_HEIGHT = 40;
+	// One tile in this many is a wall
+	private static final int WALL_RARITY = 8;
+	private static final int NUM_UNITS = 4;
+	private static final int NUM_CONTROL_POINTS = 4;
+	private static final int NUM_MAINFRAMES = 2;
+	private static final int NUM_PICKUPS = 6;
+	private static final int MAX_HEALTH = 100;
+	private static final int REPAIR_KIT_HEALTH_AMOUNT = 20;
+	private static final int SHIELD_TURNS = 5;
+
+	private static boolean warmedUp;
+
+	private final SplittableRandom random = new SplittableRandom(0);
+
+	private int turns;
+	private long firstTurnNanos;
+	private long lastTurnNanos;
+
+	private WarmUp() {
+	}
+
+	/**
+	 * Initialize the classes, then play synthetic turns until the time budget
+	 * runs out or the turns stop getting faster.
+	 *
+	 * @param budgetNanos
+	 *            How long to play synthetic turns for at most.
+	 * @return The warm-up, or null if this JVM was already warmed up.
+	 */
+	static synchronized WarmUp run(long budgetNanos) {
+		if (warmedUp) {
+			return null;
+		}
+		warmedUp = true;
+		// Initializing the flight event classes starts JFR, which takes
+		// longer than the turns themselves, so it isn't counted
+		initializeClasses();
+		long deadline = System.nanoTime() + budgetNanos;
+		WarmUp warmUp = new WarmUp();
+		SyntheticGame game = null;
+		PlayerAI player = null;
+		while (warmUp.turns < MAX_TURNS && System.nanoTime() < deadline) {
+			if (warmUp.turns % TURNS_PER_GAME == 0) {
+				game = new SyntheticGame(warmUp.random);
+				player = new PlayerAI(true);
+			}
+			long start = System.nanoTime();
+			player.playTurn(game);
+			warmUp.lastTurnNanos = System.nanoTime() - start;
+			if (warmUp.turns++ == 0) {
+				warmUp.firstTurnNanos = warmUp.lastTurnNanos;
+			}
+			game.endTurn();
+		}
+		return warmUp;
+	}
+
+	/**
+	 * @return The number of synthetic turns played.
+	 */
+	int turns() {
+		return turns;
+	}
+
+	/**
+	 * @return How long the first synthetic turn took, cold.
+	 */
+	long firstTurnNanos() {
+		return firstTurnNanos;
+	}
+
+	/**
+	 * @return How long the last synthetic turn took.
+	 */
+	long lastTurnNanos() {
+		return lastTurnNanos;
+	}
+
+	private static void initializeClasses() {
+		for (Class<?> c : CLASSES) {
+			try {
+				Class.forName(c.getName(), true, c.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				// Already loaded, so it can always be found
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * @return The first constant of an enum that isn't the given one. Stands
+	 *         for the results PlayerAI only tells apart from the valid one.
+	 */
+	private static <E extends Enum<E>> E other(E[] values, E constant) {
+		for (E value : values) {
+			if (value != constant) {
+				return value;
+			}
+		}
+		return constant;
+	}
+
+	/**
+	 * A game on a random map with walls, control points, pickups and a team
+	 * of units on each side. The orders given during a turn are carried out
+	 * by endTurn().
+	 */
+	private static final class SyntheticGame implements GameView {
+		private static final TileType FLOOR = other(TileType.values(),
+				TileType.WALL);
+		private static final MoveResult MOVE_INVALID = other(
+				MoveResult.values(), MoveResult.MOVE_VALID);
+		private static final ShotResult CANNOT_HIT_ENEMY = other(
+				ShotResult.values(), ShotResult.CAN_HIT_ENEMY);
+		private static final ActivateShieldResult SHIELD_ACTIVATION_INVALID = other(
+				ActivateShieldResult.values(),
+				ActivateShieldResult.SHIELD_ACTIVATION_VALID);
+		private static final PickupResult PICK_UP_INVALID = other(
+				PickupResult.values(), PickupResult.PICK_UP_VALID);
+		private static final Enemy[] NO_ATTACKERS = new Enemy[0];
+
+		private final SplittableRandom random;
+		private final boolean[] walls = new boolean[MAP_WIDTH * MAP_HEIGHT];
+		private final Team friendlyTeam;
+		private final Team enemyTeam;
+		private final SyntheticFriendly[] friendlyUnits = new SyntheticFriendly[NUM_UNITS];
+		private final SyntheticEnemy[] enemyUnits = new SyntheticEnemy[NUM_UNITS];
+		private final SyntheticControlPoint[] controlPoints = new SyntheticControlPoint[NUM_CONTROL_POINTS];
+		private final SyntheticPickup[] pickups = new SyntheticPickup[NUM_PICKUPS];
+
+		SyntheticGame(SplittableRandom random) {
+			this.random = random;
+			for (int t = 0; t < walls.length; t++) {
+				walls[t] = random.nextInt(WALL_RARITY) == 0;
+			}
+			// The teams are the two that are each other's opposite, and the
+			// control points start out with neither if there is such a team
+			Team team = Team.values()[0];
+			for (Team t : Team.values()) {
+				if (Team.opposite(t) != t) {
+					team = t;
+					break;
+				}
+			}
+			friendlyTeam = team;
+			enemyTeam = Team.opposite(team);
+			Team neutral = enemyTeam;
+			for (Team t : Team.values()) {
+				if (t != friendlyTeam && t != enemyTeam) {
+					neutral = t;
+				}
+			}
+			for (int u = 0; u < NUM_UNITS; u++) {
+				friendlyUnits[u] = new SyntheticFriendly(freeTile(),
+						friendlyTeam, String.valueOf((char) ('A' + u)));
+				enemyUnits[u] = new SyntheticEnemy(freeTile(), enemyTeam,
+						String.valueOf((char) ('a' + u)));
+			}
+			for (int c = 0; c < NUM_CONTROL_POINTS; c++) {
+				controlPoints[c] = new SyntheticControlPoint(freeTile(),
+						c < NUM_MAINFRAMES, neutral);
+			}
+			for (int k = 0; k < NUM_PICKUPS; k++) {
+				pickups[k] = new SyntheticPickup();
+				place(pickups[k]);
+			}
+		}
+
+		@Override
+		public int getWidth() {
+			return MAP_WIDTH;
+		}
+
+		@Override
+		public int getHeight() {
+			return MAP_HEIGHT;
+		}
+
+		@Override
+		public TileType getTile(Point p) {
+			return isWall(p.getX(), p.getY()) ? TileType.WALL : FLOOR;
+		}
+
+		@Override
+		public Friendly[] getFriendlyUnits() {
+			return friendlyUnits;
+		}
+
+		@Override
+		public Enemy[] getEnemyUnits() {
+			return enemyUnits;
+		}
+
+		@Override
+		public ControlPoint[] getControlPoints() {
+			return controlPoints;
+		}
+
+		@Override
+		public Pickup[] getPickups() {
+			return pickups;
+		}
+
+		@Override
+		public Pickup getPickupAtPosition(Point p) {
+			for (SyntheticPickup pickup : pickups) {
+				if (same(pickup.position, p)) {
+					return pickup;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @return The number of moves between the points if there were no
+		 *         walls.
+		 */
+		@Override
+		public int getPathLength(Point from, Point to) {
+			return distance(from, to);
+		}
+
+		@Override
+		public boolean canShooterShootTarget(Point shooter, Point target,
+				int range) {
+			if (distance(shooter, target) > range) {
+				return false;
+			}
+			// Walk the line from the shooter to the target, which walls block
+			int x = shooter.getX();
+			int y = shooter.getY();
+			int dx = Math.abs(target.getX() - x);
+			int dy = -Math.abs(target.getY() - y);
+			int sx = x < target.getX() ? 1 : -1;
+			int sy = y < target.getY() ? 1 : -1;
+			int error = dx + dy;
+			while (x != target.getX() || y != target.getY()) {
+				if (isWall(x, y)) {
+					return false;
+				}
+				int e2 = 2 * error;
+				if (e2 >= dy) {
+					error += dy;
+					x += sx;
+				}
+				if (e2 <= dx) {
+					error += dx;
+					y += sy;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Carry out the orders our units were given and let the enemies act,
+		 * then hand each control point to the team that alone stands next to
+		 * it.
+		 */
+		void endTurn() {
+			for (SyntheticFriendly unit : friendlyUnits) {
+				unit.damageTaken = 0;
+				unit.attackers = NO_ATTACKERS;
+				if (unit.shieldTurns > 0) {
+					unit.shieldTurns--;
+				}
+				if (unit.shield) {
+					unit.shields--;
+					unit.shieldTurns = SHIELD_TURNS;
+				}
+			}
+			// Both sides shoot from where they stood before anyone moves
+			for (SyntheticEnemy enemy : enemyUnits) {
+				enemy.target = null;
+				if (enemy.health == 0) {
+					continue;
+				}
+				for (SyntheticFriendly unit : friendlyUnits) {
+					if (unit.health > 0
+							&& canShooterShootTarget(enemy.position,
+									unit.position, enemy.weapon.getRange())) {
+						enemy.target = unit;
+						break;
+					}
+				}
+			}
+			for (SyntheticFriendly unit : friendlyUnits) {
+				if (unit.shot != null && unit.health > 0) {
+					SyntheticEnemy enemy = (SyntheticEnemy) unit.shot;
+					enemy.health = Math.max(0,
+							enemy.health - unit.weapon.getDamage());
+				}
+			}
+			for (SyntheticEnemy enemy : enemyUnits) {
+				SyntheticFriendly unit = enemy.target;
+				if (unit != null && unit.shieldTurns == 0) {
+					int damage = enemy.weapon.getDamage();
+					unit.health = Math.max(0, unit.health - damage);
+					unit.damageTaken += damage;
+					unit.attackers = Arrays.copyOf(unit.attackers,
+							unit.attackers.length + 1);
+					unit.attackers[unit.attackers.length - 1] = enemy;
+				}
+			}
+			for (SyntheticFriendly unit : friendlyUnits) {
+				if (unit.move != null
+						&& unit.checkMove(unit.move) == MoveResult.MOVE_VALID) {
+					unit.position = unit.move.movePoint(unit.position);
+				}
+				if (unit.pickup) {
+					pickUp(unit, (SyntheticPickup) getPickupAtPosition(unit
+							.getPosition()));
+				}
+				unit.move = null;
+				unit.shot = null;
+				unit.shield = false;
+				unit.pickup = false;
+			}
+			Direction[] directions = Direction.values();
+			for (SyntheticEnemy enemy : enemyUnits) {
+				if (enemy.health > 0 && enemy.target == null) {
+					Point next = directions[random.nextInt(directions.length)]
+							.movePoint(enemy.position);
+					if (isFree(next)) {
+						enemy.position = next;
+					}
+				}
+			}
+			for (SyntheticControlPoint cp : controlPoints) {
+				boolean friendly = isHeld(cp, friendlyUnits);
+				boolean enemy = isHeld(cp, enemyUnits);
+				if (friendly != enemy) {
+					cp.team = friendly ? friendlyTeam : enemyTeam;
+				}
+			}
+		}
+
+		private void pickUp(SyntheticFriendly unit, SyntheticPickup pickup) {
+			if (pickup == null) {
+				return;
+			}
+			if (pickup.type == PickupType.REPAIR_KIT) {
+				unit.health = Math.min(MAX_HEALTH, unit.health
+						+ REPAIR_KIT_HEALTH_AMOUNT);
+			} else if (pickup.type == PickupType.SHIELD) {
+				unit.shields++;
+			} else {
+				unit.weapon = randomWeapon();
+			}
+			// A pickup taken turns up somewhere else, so that there are
+			// always as many
+			place(pickup);
+		}
+
+		private void place(SyntheticPickup pickup) {
+			PickupType[] types = PickupType.values();
+			pickup.position = freeTile();
+			pickup.type = types[random.nextInt(types.length)];
+		}
+
+		private WeaponType randomWeapon() {
+			WeaponType[] weapons = WeaponType.values();
+			return weapons[random.nextInt(weapons.length)];
+		}
+
+		/**
+		 * @return A random point that is neither a wall nor taken by a unit.
+		 */
+		private Point freeTile() {
+			while (true) {
+				Point p = new Point(random.nextInt(MAP_WIDTH),
+						random.nextInt(MAP_HEIGHT));
+				if (isFree(p)) {
+					return p;
+				}
+			}
+		}
+
+		private boolean isWall(int x, int y) {
+			return x < 0 || x >= MAP_WIDTH || y < 0 || y >= MAP_HEIGHT
+					|| walls[y * MAP_WIDTH + x];
+		}
+
+		/**
+		 * @return True if the point is neither a wall nor taken by a living
+		 *         unit. Units not placed yet take nothing.
+		 */
+		private boolean isFree(Point p) {
+			if (isWall(p.getX(), p.getY())) {
+				return false;
+			}
+			for (SyntheticUnit unit : friendlyUnits) {
+				if (unit != null && unit.health > 0
+						&& same(unit.position, p)) {
+					return false;
+				}
+			}
+			for (SyntheticUnit unit : enemyUnits) {
+				if (unit != null && unit.health > 0
+						&& same(unit.position, p)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static boolean isHeld(SyntheticControlPoint cp,
+				SyntheticUnit[] units) {
+			for (SyntheticUnit unit : units) {
+				if (unit.health > 0
+						&& distance(unit.position, cp.position) <= 1) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean same(Point a, Point b) {
+			return a.getX() == b.getX() && a.getY() == b.getY();
+		}
+
+		private static int distance(Point a, Point b) {
+			return Math.max(Math.abs(a.getX() - b.getX()),
+					Math.abs(a.getY() - b.getY()));
+		}
+
+		private abstract class SyntheticUnit implements Unit {
+			final Team team;
+			final String icon;
+			Point position;
+			int health = MAX_HEALTH;
+			WeaponType weapon = randomWeapon();
+
+			SyntheticUnit(Point position, Team team, String icon) {
+				this.position = position;
+				this.team = team;
+				this.icon = icon;
+			}
+
+			@Override
+			public Point getPosition() {
+				return position;
+			}
+
+			@Override
+			public int getHealth() {
+				return health;
+			}
+
+			@Override
+			public WeaponType getCurrentWeapon() {
+				return weapon;
+			}
+
+			@Override
+			public Team getTeam() {
+				return team;
+			}
+
+			@Override
+			public String getASCIIIcon() {
+				return icon;
+			}
+		}
+
+		private final class SyntheticEnemy extends SyntheticUnit implements
+				Enemy {
+			// The unit the enemy shoots at this turn
+			SyntheticFriendly target;
+
+			SyntheticEnemy(Point position, Team team, String icon) {
+				super(position, team, icon);
+			}
+		}
+
+		private final class SyntheticFriendly extends SyntheticUnit
+				implements Friendly {
+			int shields;
+			int shieldTurns;
+			int damageTaken;
+			Enemy[] attackers = NO_ATTACKERS;
+
+			// The order given this turn
+			Direction move;
+			Enemy shot;
+			boolean shield;
+			boolean pickup;
+
+			SyntheticFriendly(Point position, Team team, String icon) {
+				super(position, team, icon);
+			}
+
+			@Override
+			public MoveResult checkMove(Direction direction) {
+				Point next = direction.movePoint(position);
+				if (health > 0 && !same(next, position) && isFree(next)) {
+					return MoveResult.MOVE_VALID;
+				}
+				return MOVE_INVALID;
+			}
+
+			@Override
+			public ShotResult checkShotAgainstEnemy(Enemy enemy) {
+				if (health > 0
+						&& enemy.getHealth() > 0
+						&& canShooterShootTarget(position,
+								enemy.getPosition(), weapon.getRange())) {
+					return ShotResult.CAN_HIT_ENEMY;
+				}
+				return CANNOT_HIT_ENEMY;
+			}
+
+			@Override
+			public ActivateShieldResult checkShieldActivation() {
+				if (health > 0 && shields > 0 && shieldTurns == 0) {
+					return ActivateShieldResult.SHIELD_ACTIVATION_VALID;
+				}
+				return SHIELD_ACTIVATION_INVALID;
+			}
+
+			@Override
+			public PickupResult checkPickupResult() {
+				if (health > 0 && getPickupAtPosition(position) != null) {
+					return PickupResult.PICK_UP_VALID;
+				}
+				return PICK_UP_INVALID;
+			}
+
+			@Override
+			public int getDamageTakenLastTurn() {
+				return damageTaken;
+			}
+
+			@Override
+			public Enemy[] getEnemiesWhoShotMeLastTurn() {
+				return attackers;
+			}
+
+			@Override
+			public void move(Direction direction) {
+				move = direction;
+			}
+
+			@Override
+			public void shootAt(Enemy enemy) {
+				shot = enemy;
+			}
+
+			@Override
+			public void activateShield() {
+				shield = true;
+			}
+
+			@Override
+			public void pickupItemAtPosition() {
+				pickup = true;
+			}
+
+			@Override
+			public void standby() {
+			}
+		}
+
+		private static final class SyntheticControlPoint implements
+				ControlPoint {
+			final Point position;
+			final boolean mainframe;
+			Team team;
+
+			SyntheticControlPoint(Point position, boolean mainframe,
+					Team team) {
+				this.position = position;
+				this.mainframe = mainframe;
+				this.team = team;
+			}
+
+			@Override
+			public Point getPosition() {
+				return position;
+			}
+
+			@Override
+			public Team getControllingTeam() {
+				return team;
+			}
+
+			@Override
+			public boolean isMainframe() {
+				return mainframe;
+			}
+		}
+
+		private static final class SyntheticPickup implements Pickup {
+			Point position;
+			PickupType type;
+
+			@Override
+			public Point getPosition() {
+				return position;
+			}
+
+			@Override
+			public PickupType getPickupType() {
+				return type;
+			}
+		}
+	}
+}
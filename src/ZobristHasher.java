@@ -0,0 +1,138 @@
+import com.orbischallenge.ctz.objects.enums.ActivateShieldResult;
+import com.orbischallenge.ctz.objects.enums.PickupResult;
+import com.orbischallenge.game.engine.Point;
+
+/**
+ * Zobrist hashing over the parts of the world that our heuristics look at:
+ * unit positions, health buckets, weapons, which shots and shield activations
+ * are possible, who shot whom last turn, control point owners and pickups.
+ * <p>
+ * Every key is derived on the fly by mixing the feature into a per-feature
+ * seed, positions included: a table of random keys per slot and tile would
+ * take 33 MB for 64 units on a 256 by 256 map.
+ */
+final class ZobristHasher {
+
+	// Feature seeds for the scalar features
+	private static final long HEALTH = 0x3c6ef372fe94f82bL;
+	private static final long WEAPON = 0xa54ff53a5f1d36f1L;
+	private static final long SHOT = 0x510e527fade682d1L;
+	private static final long SHIELD = 0x9b05688c2b3e6c1fL;
+	private static final long PICKUP = 0x1f83d9abfb41bd6bL;
+	private static final long PICKUP_ITEM = 0x6a09e667f3bcc908L;
+	private static final long ATTACKED = 0x5be0cd19137e2179L;
+	private static final long CONTROL_POINT = 0xcbbb9d5dc1059ed8L;
+	private static final long UNIT = 0x629a292a367cd507L;
+	private static final long POSITION = 0xbb67ae8584caa73bL;
+
+	private final GameMap map;
+	private final int healthBucketSize;
+	// Added to the position seed so that different seeds give different keys
+	private final long positionSeed;
+
+	/**
+	 * @param healthBucketSize
+	 *            Health values are hashed in buckets of this size. A size of 1
+	 *            keeps hashed states exact; larger buckets trade accuracy for
+	 *            more hits.
+	 */
+	ZobristHasher(GameMap map, int healthBucketSize, long seed) {
+		this.map = map;
+		this.healthBucketSize = healthBucketSize;
+		this.positionSeed = POSITION + mix(seed);
+	}
+
+	/**
+	 * Hash the state of the world at the start of a turn.
+	 *
+	 * @param canHitEnemy
+	 *            canHitEnemy[i][j] is true if friendlyUnit i can shoot
+	 *            enemyUnit j this turn.
+	 */
+	long hashWorld(GameView.Friendly[] friendlyUnits,
+			GameView.Enemy[] enemyUnits, boolean[][] canHitEnemy,
+			GameView.ControlPoint[] controlPoints, GameView.Pickup[] pickups) {
+		long hash = 0L;
+		int numFriendly = friendlyUnits.length;
+		for (int i = 0; i < numFriendly; i++) {
+			GameView.Friendly unit = friendlyUnits[i];
+			hash ^= hashUnit(i, unit.getPosition(), unit.getHealth(), unit
+					.getCurrentWeapon().ordinal());
+			if (unit.checkShieldActivation() == ActivateShieldResult.SHIELD_ACTIVATION_VALID) {
+				hash ^= mix(SHIELD + i);
+			}
+			if (unit.checkPickupResult() == PickupResult.PICK_UP_VALID) {
+				hash ^= mix(PICKUP + i);
+			}
+			for (int j = 0; j < enemyUnits.length; j++) {
+				if (canHitEnemy[i][j]) {
+					hash ^= mix(SHOT + (long) i * enemyUnits.length + j);
+				}
+			}
+			if (unit.getDamageTakenLastTurn() > 0) {
+				for (GameView.Enemy attacker : unit
+						.getEnemiesWhoShotMeLastTurn()) {
+					hash ^= mix(ATTACKED + (long) i * map.size
+							+ map.index(attacker.getPosition()));
+				}
+			}
+		}
+		for (int j = 0; j < enemyUnits.length; j++) {
+			GameView.Enemy unit = enemyUnits[j];
+			hash ^= hashUnit(numFriendly + j, unit.getPosition(),
+					unit.getHealth(), unit.getCurrentWeapon().ordinal());
+		}
+		for (int c = 0; c < controlPoints.length; c++) {
+			hash ^= mix(CONTROL_POINT + 4L * c
+					+ controlPoints[c].getControllingTeam().ordinal());
+		}
+		for (GameView.Pickup pickup : pickups) {
+			hash ^= mix(PICKUP_ITEM + 16L * map.index(pickup.getPosition())
+					+ pickup.getPickupType().ordinal() + 1);
+		}
+		return hash;
+	}
+
+	/**
+	 * @return The key that identifies the friendlyUnit deciding within a
+	 *         state.
+	 */
+	long hashDecidingUnit(int i) {
+		return mix(UNIT + i);
+	}
+
+	/**
+	 * @return The key for a friendlyUnit committing to move to a point this
+	 *         turn.
+	 */
+	long hashCommittedMove(int i, Point destination) {
+		return mix(positionKey(i, map.index(destination)) + UNIT);
+	}
+
+	/**
+	 * @param slot
+	 *            The index of the unit, friendlyUnits first and then
+	 *            enemyUnits.
+	 * @return The key for a unit standing on a tile.
+	 */
+	private long positionKey(int slot, int tile) {
+		return mix(positionSeed + ((long) slot << 32) + tile);
+	}
+
+	private long hashUnit(int slot, Point position, int health, int weapon) {
+		int bucket = Math.max(health, 0) / healthBucketSize;
+		return positionKey(slot, map.index(position))
+				^ mix(HEALTH + ((long) slot << 32) + bucket)
+				^ mix(WEAPON + ((long) slot << 8) + weapon);
+	}
+
+	/**
+	 * The SplitMix64 finalizer, used to turn small feature values into well
+	 * distributed 64-bit keys.
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}